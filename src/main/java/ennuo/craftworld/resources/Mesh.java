@@ -181,7 +181,7 @@ public class Mesh implements Serializable {
     }
     
     public byte[] build(Revision revision, byte compressionFlags) {
-        int dataSize = 1024 * 500;
+        int dataSize = 0x1000;
         for (byte[] stream : this.streams)
             dataSize += stream.length;
         if (this.attributes != null) dataSize += this.attributes.length;
@@ -1,5 +1,6 @@
 package ennuo.craftworld.resources;
 
+import ennuo.craftworld.resources.enums.CompressionProfile;
 import ennuo.craftworld.resources.enums.ResourceType;
 import ennuo.craftworld.serializer.Data;
 import ennuo.craftworld.types.data.ResourceDescriptor;
@@ -9,14 +10,17 @@ import ennuo.craftworld.resources.structs.TextureInfo;
 import ennuo.craftworld.resources.structs.mesh.StaticPrimitive;
 import ennuo.craftworld.serializer.Output;
 import ennuo.craftworld.serializer.Serializer;
-import ennuo.craftworld.types.FileEntry;
+import ennuo.craftworld.utilities.ByteReplacer;
 import ennuo.craftworld.utilities.Bytes;
 import ennuo.craftworld.utilities.Compressor;
 import ennuo.craftworld.utilities.TEA;
-import ennuo.toolkit.utilities.Globals;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Resource {
     public ResourceType type = ResourceType.INVALID;
@@ -33,12 +37,21 @@ public class Resource {
     
     public Resource(Output output) {
         output.shrink();
+        this.setOutput(output);
+        this.handle = new Data(output.buffer, output.revision);
+        this.handle.compressionFlags = output.compressionFlags;
+    }
+    
+    /**
+     * Takes the header fields of a resource from a serialized output,
+     * without touching its buffer.
+     * @param output Output the resource was serialized to
+     */
+    private void setOutput(Output output) {
         this.revision = output.revision;
         this.dependencies = new ArrayList<>(output.dependencies);
         this.method = SerializationMethod.BINARY;
         this.compressionFlags = output.compressionFlags;
-        this.handle = new Data(output.buffer, output.revision);
-        this.handle.compressionFlags = output.compressionFlags;
     }
     
     public Resource(String path) {
@@ -53,41 +66,32 @@ public class Resource {
     
     private void process() {
         if (this.handle == null || this.handle.length < 0xb) return;
-        this.type = ResourceType.fromMagic(this.handle.str(3));
+        ResourceHeader header = new ResourceHeader(ByteBuffer.wrap(this.handle.data, 0, this.handle.length), true);
+        this.type = header.type;
         if (this.type == ResourceType.INVALID) { this.handle.seek(0); return; }
-        this.method = SerializationMethod.getValue(this.handle.str(1));
+        this.method = header.method;
         if (this.method == SerializationMethod.UNKNOWN) { this.handle.seek(0); return; }
+        this.handle.seek(header.headerSize);
         switch (this.method) {
             case BINARY:
             case ENCRYPTED_BINARY:
-                this.revision = new Revision(this.handle.i32f());
+                this.revision = header.revision;
                 this.handle.revision = this.revision;
-                int dependencyTableOffset = -1;
-                if (this.revision.head >= 0x109) {
-                    dependencyTableOffset = this.getDependencies();
-                    if (this.revision.head >= 0x189) {
-                        if (this.type != ResourceType.STATIC_MESH) {
-                            if (this.revision.head >= 0x271) { 
-                                // NOTE(Aidan): Were they actually added on 0x27a, but how can it be on 0x272 then?!
-                                this.revision.branchID = this.handle.i16();
-                                this.revision.branchRevision = this.handle.i16();
-                                this.handle.revision = revision;
-                            }
-                            if (this.revision.head >= 0x297 || (this.revision.head == 0x272 && this.revision.branchID != 0)) {
-                                this.compressionFlags = this.handle.i8();
-                                this.handle.compressionFlags = this.compressionFlags;
-                            }
-                            this.isCompressed = this.handle.bool();
-                        } else 
-                            this.meshInfo = new Serializer(this.handle).struct(null, StaticMeshInfo.class);
-                    }
-                }
+                this.compressionFlags = header.compressionFlags;
+                this.handle.compressionFlags = this.compressionFlags;
+                this.isCompressed = header.isCompressed;
+                this.dependencies = header.dependencies;
+                int dependencyTableOffset = header.dependencyTableOffset;
+                if (this.type == ResourceType.STATIC_MESH && this.revision.head >= 0x189)
+                    this.meshInfo = new Serializer(this.handle).struct(null, StaticMeshInfo.class);
                 
                 if (this.method == SerializationMethod.ENCRYPTED_BINARY) {
                     int size = this.handle.i32f(), padding = 0;
                     if (size % 4 != 0)
                         padding = 4 - (size % 4);
-                    this.handle.setData(TEA.decrypt(this.handle.bytes(size + padding)));
+                    byte[] data = this.handle.bytes(size + padding);
+                    TEA.decryptInPlace(data);
+                    this.handle.setData(data);
                     this.handle.offset += padding;
                 }
                 
@@ -112,106 +116,96 @@ public class Resource {
     }
     
     public int registerDependencies(boolean recursive) {
-        if (this.method != SerializationMethod.BINARY) return 0;
-        int missingDependencies = 0;
-        for (ResourceDescriptor dependency : this.dependencies) {
-            FileEntry entry = Globals.findEntry(dependency);
-            if (entry == null) {
-                missingDependencies++;
-                continue;
-            }
-            if (recursive && this.type != ResourceType.SCRIPT) {
-                byte[] data = Globals.extractFile(dependency);
-                if (data != null) {
-                    Resource resource = new Resource(data);
-                    if (resource.method == SerializationMethod.BINARY) {
-                        entry.hasMissingDependencies = resource.registerDependencies(recursive) != 0;
-                        entry.canReplaceDecompressed = true;
-                        entry.dependencies = resource.dependencies;
-                    }
-                }
-            }
-        }
-        return missingDependencies;
+        return ResourceHeader.registerDependencies(this.method, this.type, this.dependencies, recursive);
     }
     
     public void replaceDependency(ResourceDescriptor oldDescriptor, ResourceDescriptor newDescriptor) {
-        if (oldDescriptor.equals(newDescriptor)) return;
-        int index = this.dependencies.indexOf(oldDescriptor);
-        if (index == -1) return;
+        this.replaceDependencies(Collections.singletonMap(oldDescriptor, newDescriptor));
+    }
+    
+    /**
+     * Replaces any number of dependencies at once, the thing data of plans
+     * is only parsed and rebuilt once, and every reference is rewritten in a single pass.
+     * @param descriptors Map of old descriptors to the descriptors replacing them,
+     * dependencies replaced with null or GUID 0 are removed
+     */
+    public void replaceDependencies(Map<ResourceDescriptor, ResourceDescriptor> descriptors) {
+        LinkedHashMap<ResourceDescriptor, ResourceDescriptor> replacements = new LinkedHashMap<>();
+        for (Map.Entry<ResourceDescriptor, ResourceDescriptor> replacement : descriptors.entrySet()) {
+            ResourceDescriptor oldDescriptor = replacement.getKey();
+            if (oldDescriptor.equals(replacement.getValue())) continue;
+            if (!this.dependencies.contains(oldDescriptor)) continue;
+            replacements.put(oldDescriptor, replacement.getValue());
+        }
+        if (replacements.isEmpty()) return;
         
         if (this.type != ResourceType.STATIC_MESH) {
-            ResourceType type = oldDescriptor.type;
-            boolean isFSB = type.equals(ResourceType.FILENAME);
-            byte[] oldDescBuffer, newDescBuffer;
-
-            // Music dependencies are actually the GUID dependencies of a script,
-            // so they don't have the same structure for referencing.
-            if (type.equals(ResourceType.MUSIC_SETTINGS) || type.equals(ResourceType.FILE_OF_BYTES) || type.equals(ResourceType.SAMPLE) || isFSB) {
-                oldDescBuffer = Bytes.createGUID(oldDescriptor.GUID, this.compressionFlags);
-                newDescBuffer = Bytes.createGUID(newDescriptor.GUID, this.compressionFlags);
-            } else {
-                oldDescBuffer = Bytes.createResourceReference(oldDescriptor, this.revision, this.compressionFlags);
-                newDescBuffer = Bytes.createResourceReference(newDescriptor, this.revision, this.compressionFlags);
+            ByteReplacer replacer = new ByteReplacer();
+            ArrayList<ResourceDescriptor> sounds = new ArrayList<>();
+            for (Map.Entry<ResourceDescriptor, ResourceDescriptor> replacement : replacements.entrySet()) {
+                ResourceDescriptor oldDescriptor = replacement.getKey();
+                ResourceDescriptor newDescriptor = replacement.getValue();
+                if (newDescriptor == null) continue;
+                
+                ResourceType type = oldDescriptor.type;
+                boolean isFSB = type.equals(ResourceType.FILENAME);
+                if (isFSB) sounds.add(oldDescriptor);
+                
+                // Music dependencies are actually the GUID dependencies of a script,
+                // so they don't have the same structure for referencing.
+                if (type.equals(ResourceType.MUSIC_SETTINGS) || type.equals(ResourceType.FILE_OF_BYTES) || type.equals(ResourceType.SAMPLE) || isFSB)
+                    replacer.add(Bytes.createGUID(oldDescriptor.GUID, this.compressionFlags), Bytes.createGUID(newDescriptor.GUID, this.compressionFlags));
+                else
+                    replacer.add(
+                        Bytes.createResourceReference(oldDescriptor, this.revision, this.compressionFlags), 
+                        Bytes.createResourceReference(newDescriptor, this.revision, this.compressionFlags)
+                    );
             }
-
-
-            if (this.type == ResourceType.PLAN) {
+            
+            if (this.type == ResourceType.PLAN && !replacer.isEmpty()) {
                 Plan plan = new Plan(this);
-                Data thingData = new Data(plan.thingData, this.revision);
-                Bytes.ReplaceAll(thingData, oldDescBuffer, newDescBuffer);
-                plan.thingData = thingData.data;
-
-                if (isFSB && plan.details != null) {
-                    if (oldDescriptor.GUID == plan.details.highlightSound)
-                        plan.details.highlightSound = newDescriptor.GUID;
+                plan.thingData = replacer.replace(plan.thingData);
+                
+                if (plan.details != null) {
+                    for (ResourceDescriptor sound : sounds) {
+                        if (sound.GUID == plan.details.highlightSound) {
+                            plan.details.highlightSound = replacements.get(sound).GUID;
+                            break;
+                        }
+                    }
                 }
-
+                
                 this.handle.setData(plan.build(this.revision, this.compressionFlags, false));
             }
-            Bytes.ReplaceAll(this.handle, oldDescBuffer, newDescBuffer);
+            replacer.replace(this.handle);
         } else {
-            if (this.meshInfo.fallmap.equals(oldDescriptor))
-                this.meshInfo.fallmap = newDescriptor;
-            if (this.meshInfo.lightmap.equals(oldDescriptor))
-                this.meshInfo.lightmap = newDescriptor;
-            if (this.meshInfo.risemap.equals(oldDescriptor))
-                this.meshInfo.risemap = newDescriptor;
-            for (StaticPrimitive primitive : this.meshInfo.primitives)
-                if (primitive.gmat.equals(oldDescriptor))
-                    primitive.gmat = newDescriptor;
+            for (Map.Entry<ResourceDescriptor, ResourceDescriptor> replacement : replacements.entrySet()) {
+                ResourceDescriptor oldDescriptor = replacement.getKey();
+                ResourceDescriptor newDescriptor = replacement.getValue();
+                if (this.meshInfo.fallmap.equals(oldDescriptor))
+                    this.meshInfo.fallmap = newDescriptor;
+                if (this.meshInfo.lightmap.equals(oldDescriptor))
+                    this.meshInfo.lightmap = newDescriptor;
+                if (this.meshInfo.risemap.equals(oldDescriptor))
+                    this.meshInfo.risemap = newDescriptor;
+                for (StaticPrimitive primitive : this.meshInfo.primitives)
+                    if (primitive.gmat.equals(oldDescriptor))
+                        primitive.gmat = newDescriptor;
+            }
         }
         
-        // Remove the dependency from the array if it's effectively null.
-        if (newDescriptor == null || newDescriptor.GUID == 0)
-            this.dependencies.remove(index);
-        else this.dependencies.set(index, newDescriptor);
-    }
-    
-    private int getDependencies() {
-        int dependencyTableOffset = this.handle.i32f();
-        int originalOffset = this.handle.offset;
-        this.handle.offset = dependencyTableOffset;
-        
-        int size = this.handle.i32f();
-        this.dependencies = new ArrayList<>(size);
-        for (int i = 0; i < size; ++i) {
-            ResourceDescriptor descriptor = new ResourceDescriptor();
-            switch (this.handle.i8()) {
-                case 1:
-                    descriptor.hash = this.handle.sha1();
-                    break;
-                case 2:
-                    descriptor.GUID = this.handle.u32f();
-                    break;
+        // Remove dependencies from the array if they're effectively null.
+        ArrayList<ResourceDescriptor> dependencies = new ArrayList<>(this.dependencies.size());
+        for (ResourceDescriptor dependency : this.dependencies) {
+            if (!replacements.containsKey(dependency)) {
+                dependencies.add(dependency);
+                continue;
             }
-            descriptor.type = ResourceType.fromType(this.handle.i32f());
-            this.dependencies.add(descriptor);
+            ResourceDescriptor newDescriptor = replacements.get(dependency);
+            if (newDescriptor != null && newDescriptor.GUID != 0)
+                dependencies.add(newDescriptor);
         }
-        
-        this.handle.offset = originalOffset;
-        
-        return dependencyTableOffset;
+        this.dependencies = dependencies;
     }
     
     public static byte[] compressToResource(byte[] data, Revision revision, byte compressionFlags, ResourceType type, ArrayList<ResourceDescriptor> dependencies) {
@@ -228,26 +222,42 @@ public class Resource {
     }
     
     public static byte[] compressToResource(Output data, StaticMeshInfo info) {
-        Resource resource = new Resource(data);
+        Resource resource = new Resource();
+        resource.setOutput(data);
         resource.meshInfo = info;
         resource.type = ResourceType.STATIC_MESH;
-        return resource.compressToResource();
+        return resource.compressToResource(data.view(), CompressionProfile.MAX);
     }
     
     public static byte[] compressToResource(Output data, ResourceType type) {
-        Resource resource = new Resource(data);
+        Resource resource = new Resource();
+        resource.setOutput(data);
         resource.type = type;
         if (type == ResourceType.LOCAL_PROFILE)
             resource.method = SerializationMethod.ENCRYPTED_BINARY;
-        return resource.compressToResource();
+        return resource.compressToResource(data.view(), CompressionProfile.MAX);
     }
     
-    public byte[] compressToResource() {
-        Output output = new Output(this.dependencies.size() * 0x1c + this.handle.length + 0x50);
+    public byte[] compressToResource() { return this.compressToResource(CompressionProfile.MAX); }
+    public byte[] compressToResource(CompressionProfile profile) {
+        return this.compressToResource(ByteBuffer.wrap(this.handle.data), profile);
+    }
+    
+    /**
+     * Builds a resource around a body that's read in place, so serialized
+     * outputs don't have to be trimmed into their own array first.
+     * @param body Array-backed buffer holding the resource's body
+     * @param profile Compression profile to use
+     * @return Built resource
+     */
+    private byte[] compressToResource(ByteBuffer body, CompressionProfile profile) {
+        int bodyOffset = body.arrayOffset() + body.position();
+        int bodySize = body.remaining();
+        Output output = new Output(this.dependencies.size() * 0x1c + bodySize + 0x50);
         
         if (this.method == SerializationMethod.TEXT) {
             output.str(this.type.header + this.method.value + '\n');
-            output.bytes(this.handle.data);
+            output.bytes(body.array(), bodyOffset, bodySize);
             output.shrink();
             return output.buffer;
         }
@@ -270,20 +280,26 @@ public class Resource {
                 }
             }
             
-            byte[] data = this.handle.data;
-            if (this.isCompressed) data = Compressor.getCompressedStream(this.handle.data);
+            byte[] data = body.array();
+            int offset = bodyOffset, size = bodySize;
+            if (this.isCompressed) {
+                data = Compressor.getCompressedStream(body, profile);
+                offset = 0;
+                size = data.length;
+            }
             if (this.method == SerializationMethod.ENCRYPTED_BINARY) {
-                int size = data.length;
-                if (size % 4 != 0) {
-                    int padding = 4 - (size % 4);
+                int padding = (size % 4 != 0) ? 4 - (size % 4) : 0;
+                if (padding != 0 || !this.isCompressed) {
                     byte[] paddedData = new byte[padding + size];
-                    System.arraycopy(data, 0, paddedData, padding, size);
+                    System.arraycopy(data, offset, paddedData, padding, size);
                     data = paddedData;
+                    offset = 0;
                 }
-                data = TEA.encrypt(data);
+                TEA.encryptInPlace(data);
                 output.i32f(size);
+                size = data.length;
             }
-            output.bytes(data);
+            output.bytes(data, offset, size);
             
             int dependencyTableOffset = output.offset;
             output.offset = 0x8;
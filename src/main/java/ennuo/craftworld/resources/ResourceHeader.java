@@ -0,0 +1,148 @@
+package ennuo.craftworld.resources;
+
+import ennuo.craftworld.resources.enums.ResourceType;
+import ennuo.craftworld.resources.enums.SerializationMethod;
+import ennuo.craftworld.resources.structs.Revision;
+import ennuo.craftworld.resources.structs.SHA1;
+import ennuo.craftworld.types.FileEntry;
+import ennuo.craftworld.types.data.ResourceDescriptor;
+import ennuo.toolkit.utilities.Globals;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Header and dependency table of a resource.
+ *
+ * Unlike Resource, the body is never decrypted or decompressed, so this
+ * should be used whenever only the type, revision or dependencies are needed.
+ */
+public class ResourceHeader {
+    public ResourceType type = ResourceType.INVALID;
+    public SerializationMethod method = SerializationMethod.UNKNOWN;
+    public Revision revision;
+    public byte compressionFlags = 0;
+    public boolean isCompressed = true;
+    public int dependencyTableOffset = -1;
+    public ArrayList<ResourceDescriptor> dependencies = new ArrayList<>();
+
+    /**
+     * Size of the header, the body of the resource starts right after it.
+     */
+    public int headerSize = 0;
+
+    public ResourceHeader(byte[] data) { this(data == null ? null : ByteBuffer.wrap(data), true); }
+
+    /**
+     * Reads the header of a resource from the position to the limit of a buffer,
+     * the position of the buffer is left untouched.
+     * @param data Resource to read
+     * @param readDependencies Whether or not to read the dependency table
+     */
+    public ResourceHeader(ByteBuffer data, boolean readDependencies) {
+        if (data == null || data.remaining() < 0xb) return;
+        ByteBuffer handle = data.slice();
+        this.read(handle);
+        this.headerSize = handle.position();
+        if (readDependencies && this.dependencyTableOffset != -1)
+            this.dependencies = ResourceHeader.getDependencies(handle, this.dependencyTableOffset);
+    }
+
+    private void read(ByteBuffer handle) {
+        this.type = ResourceType.fromMagic(ResourceHeader.str(handle, 3));
+        if (this.type == ResourceType.INVALID) return;
+        this.method = SerializationMethod.getValue(ResourceHeader.str(handle, 1));
+        if (this.method != SerializationMethod.BINARY && this.method != SerializationMethod.ENCRYPTED_BINARY)
+            return;
+
+        this.revision = new Revision(handle.getInt());
+        if (this.revision.head < 0x109) return;
+        this.dependencyTableOffset = handle.getInt();
+        // Static meshes store their mesh info here instead, which is left for Resource to read.
+        if (this.revision.head >= 0x189 && this.type != ResourceType.STATIC_MESH) {
+            if (this.revision.head >= 0x271) {
+                // NOTE(Aidan): Were they actually added on 0x27a, but how can it be on 0x272 then?!
+                this.revision.branchID = handle.getShort();
+                this.revision.branchRevision = handle.getShort();
+            }
+            if (this.revision.head >= 0x297 || (this.revision.head == 0x272 && this.revision.branchID != 0))
+                this.compressionFlags = handle.get();
+            this.isCompressed = handle.get() != 0;
+        }
+    }
+
+    private static String str(ByteBuffer handle, int size) {
+        byte[] value = new byte[size];
+        handle.get(value);
+        return new String(value, StandardCharsets.US_ASCII).replace("\0", "");
+    }
+
+    /**
+     * Reads the dependency table of a resource.
+     * @param data Resource to read from, its position is left untouched
+     * @param dependencyTableOffset Offset of the dependency table
+     * @return Dependencies of the resource
+     */
+    private static ArrayList<ResourceDescriptor> getDependencies(ByteBuffer data, int dependencyTableOffset) {
+        ByteBuffer handle = data.duplicate();
+        handle.position(dependencyTableOffset);
+
+        int size = handle.getInt();
+        ArrayList<ResourceDescriptor> dependencies = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            ResourceDescriptor descriptor = new ResourceDescriptor();
+            switch (handle.get()) {
+                case 1:
+                    if (handle.remaining() < 0x14) {
+                        descriptor.hash = new SHA1();
+                        handle.position(handle.limit());
+                        break;
+                    }
+                    byte[] hash = new byte[0x14];
+                    handle.get(hash);
+                    descriptor.hash = new SHA1(hash);
+                    break;
+                case 2:
+                    descriptor.GUID = handle.getInt() & 0xFFFFFFFFL;
+                    break;
+            }
+            descriptor.type = ResourceType.fromType(handle.getInt());
+            dependencies.add(descriptor);
+        }
+
+        return dependencies;
+    }
+
+    public int registerDependencies(boolean recursive) {
+        return ResourceHeader.registerDependencies(this.method, this.type, this.dependencies, recursive);
+    }
+
+    /**
+     * Checks which dependencies of a resource are missing, optionally
+     * recording the dependencies of each entry along the way.
+     * @return Number of missing dependencies
+     */
+    static int registerDependencies(SerializationMethod method, ResourceType type, ArrayList<ResourceDescriptor> dependencies, boolean recursive) {
+        if (method != SerializationMethod.BINARY) return 0;
+        int missingDependencies = 0;
+        for (ResourceDescriptor dependency : dependencies) {
+            FileEntry entry = Globals.findEntry(dependency);
+            if (entry == null) {
+                missingDependencies++;
+                continue;
+            }
+            if (recursive && type != ResourceType.SCRIPT) {
+                byte[] data = Globals.extractFile(dependency);
+                if (data != null) {
+                    ResourceHeader header = new ResourceHeader(data);
+                    if (header.method == SerializationMethod.BINARY) {
+                        entry.hasMissingDependencies = header.registerDependencies(recursive) != 0;
+                        entry.canReplaceDecompressed = true;
+                        entry.dependencies = header.dependencies;
+                    }
+                }
+            }
+        }
+        return missingDependencies;
+    }
+}
@@ -7,9 +7,12 @@ import ennuo.craftworld.resources.enums.ResourceType;
 import ennuo.craftworld.resources.enums.SerializationMethod;
 import ennuo.craftworld.resources.structs.TextureInfo;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import net.npe.dds.DDSReader;
@@ -42,6 +45,12 @@ public class Texture {
     public byte[] data;
 
     public BufferedImage cached;
+    
+    /**
+     * Downscaled mipmap used for previews, so the full image
+     * doesn't have to be decoded until it's actually needed.
+     */
+    private BufferedImage preview;
 
     public boolean parsed = true;
 
@@ -82,7 +91,6 @@ public class Texture {
             case TEXTURE:
                 System.out.println("Decompressing TEX to DDS");
                 this.data = resource.handle.data;
-                this.cached = Images.fromDDS(this.data);
                 break;
             case GTF_TEXTURE:
                 if (resource.method == SerializationMethod.GXT_EXTENDED || resource.method == SerializationMethod.GXT_SIMPLE) {
@@ -115,7 +123,6 @@ public class Texture {
         System.arraycopy(gtf, 0, DDS, header.length, gtf.length);
         
         this.data = DDS;
-        this.cached = this.getImage();
     }
 
     /**
@@ -132,10 +139,16 @@ public class Texture {
         this.data = DDS;
         if (this.info.format == 0x85 || this.info.format == 0x81) 
             this.unswizzle();
-        else this.cached = this.getImage();
     }
 
-    private int getMortonNumber(int x, int y, int width, int height) {
+    /**
+     * Offset tables of swizzled textures, shared between every texture of the same size.
+     * Vita tables are keyed by the size in blocks, PS3 tables by the size in pixels.
+     */
+    private static final ConcurrentHashMap<Long, int[]> GXT_TABLES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Long, int[]> GTF_TABLES = new ConcurrentHashMap<>();
+
+    private static int getMortonNumber(int x, int y, int width, int height) {
         int logW = 31 - Integer.numberOfLeadingZeros(width);
         int logH = 31 - Integer.numberOfLeadingZeros(height);
 
@@ -154,48 +167,96 @@ public class Texture {
     }
 
     /**
-     * Unswizzles each DXT1/5 compressed block in a Vita GXT texture.
+     * Gets the Morton offset of every column and row of blocks in a Vita mipmap,
+     * the offset of a block being the sum of the offsets of its column and row.
+     * @param w Width of the mipmap in blocks
+     * @param h Height of the mipmap in blocks
+     * @return Column offsets followed by row offsets, in blocks
+     */
+    private static int[] getGXTTable(int w, int h) {
+        return GXT_TABLES.computeIfAbsent(((long) w << 32) | h, key -> {
+            int log2w = 1 << (31 - Integer.numberOfLeadingZeros(w + (w - 1)));
+            int log2h = 1 << (31 - Integer.numberOfLeadingZeros(h + (h - 1)));
+
+            int mx = getMortonNumber(log2w - 1, 0, log2w, log2h);
+            int my = getMortonNumber(0, log2h - 1, log2w, log2h);
+
+            int[] table = new int[w + h];
+            for (int x = 0, ox = 0; x < w; ++x, ox = (ox - mx) & mx)
+                table[x] = ox;
+            for (int y = 0, oy = 0; y < h; ++y, oy = (oy - my) & my)
+                table[w + y] = oy;
+            return table;
+        });
+    }
+
+    /**
+     * Gets the offset of every column and row of pixels in a PS3 texture,
+     * the offset of a pixel being the sum of the offsets of its column and row.
+     * @param width Width of the texture
+     * @param height Height of the texture
+     * @return Column offsets followed by row offsets, in pixels
+     */
+    private static int[] getGTFTable(int width, int height) {
+        return GTF_TABLES.computeIfAbsent(((long) width << 32) | height, key -> {
+            // NOTE(Aidan): For original source, see:
+            // https://github.com/RPCS3/rpcs3/blob/3d49976b3c0f2d2fe5fbd9dba0419c13b389c6ba/rpcs3/Emu/RSX/rsx_utils.h
+
+            int log2width = 31 - Integer.numberOfLeadingZeros(width);
+            int log2height = 31 - Integer.numberOfLeadingZeros(height);
+
+            int xMask = 0x55555555;
+            int yMask = 0xAAAAAAAA;
+
+            int limitMask = (log2width < log2height) ? log2width : log2height;
+            limitMask = 1 << (limitMask << 1);
+
+            xMask = (xMask | ~(limitMask - 1));
+            yMask = (yMask & (limitMask - 1));
+
+            // The high bits of the x mask are contiguous, so starting a row
+            // further along is the same as adding to every offset in it.
+            int[] table = new int[width + height];
+            for (int x = 0, offsetX = 0; x < width; ++x, offsetX = (offsetX - xMask) & xMask)
+                table[x] = offsetX;
+            int offsetY = 0, offsetX0 = 0;
+            for (int y = 0; y < height; ++y) {
+                table[width + y] = offsetY + offsetX0;
+                offsetY = (offsetY - yMask) & yMask;
+                if (offsetY == 0) offsetX0 += limitMask;
+            }
+            return table;
+        });
+    }
+
+    /**
+     * Unswizzles each DXT1/5 compressed block in a Vita GXT texture,
+     * every mipmap is unswizzled in parallel.
      */
     private void unswizzleCompressed() {
-        byte[] pixels = new byte[this.data.length];
+        byte[] swizzled = this.data;
+        byte[] pixels = new byte[swizzled.length];
 
         int blockWidth = 4, blockHeight = 4;
         int bpp = 4;
         if (this.info.format == 0x88)
             bpp = 8;
-
-        int base = 0;
+        int pixelSize = (bpp * blockWidth * blockHeight) / 8;
 
         int width = Integer.max(this.info.width, blockWidth);
         int height = Integer.max(this.info.height, blockHeight);
 
         int log2width = 1 << (31 - Integer.numberOfLeadingZeros(width + (width - 1)));
         int log2height = 1 << (31 - Integer.numberOfLeadingZeros(height + (height - 1)));
-        
+
+        int[] bases = new int[this.info.mipmap];
+        int[] widths = new int[this.info.mipmap];
+        int[] heights = new int[this.info.mipmap];
+        int base = 0;
         for (int i = 0; i < this.info.mipmap; ++i) {
-            int w = ((width + blockWidth - 1) / blockWidth);
-            int h = ((height + blockHeight - 1) / blockHeight);
-            int blockSize = bpp * blockWidth * blockHeight;
-    
-            int log2w = 1 << (31 - Integer.numberOfLeadingZeros(w + (w - 1)));
-            int log2h = 1 << (31 - Integer.numberOfLeadingZeros(h + (h - 1)));
-    
-            int mx = getMortonNumber(log2w - 1, 0, log2w, log2h);
-            int my = getMortonNumber(0, log2h - 1, log2w, log2h);
-    
-            int pixelSize = blockSize / 8;
-    
-            int oy = 0, tgt = base;
-            for (int y = 0; y < h; ++y) {
-                int ox = 0;
-                for (int x = 0; x < w; ++x) {
-                    int offset = base + ((ox + oy) * pixelSize);
-                    System.arraycopy(this.data, offset, pixels, tgt, pixelSize);
-                    tgt += pixelSize;
-                    ox = (ox - mx) & mx;
-                }
-                oy = (oy - my) & my;
-            }
+            bases[i] = base;
+            widths[i] = ((width + blockWidth - 1) / blockWidth);
+            heights[i] = ((height + blockHeight - 1) / blockHeight);
 
             base += ((bpp * log2width * log2height) / 8);
 
@@ -206,6 +267,19 @@ public class Texture {
             log2height = log2height > blockHeight ? log2height / 2 : blockHeight;
         }
 
+        IntStream.range(0, this.info.mipmap).parallel().forEach(i -> {
+            int w = widths[i], h = heights[i], mipBase = bases[i];
+            int[] table = getGXTTable(w, h);
+            IntStream rows = IntStream.range(0, h);
+            if (h >= 64) rows = rows.parallel();
+            rows.forEach(y -> {
+                int row = mipBase + table[w + y] * pixelSize;
+                int tgt = mipBase + (y * w * pixelSize);
+                for (int x = 0; x < w; ++x, tgt += pixelSize)
+                    System.arraycopy(swizzled, row + table[x] * pixelSize, pixels, tgt, pixelSize);
+            });
+        });
+
         this.data = pixels;
     }
 
@@ -213,17 +287,19 @@ public class Texture {
      * Unswizzles the texture's pixel data
      */
     public void unswizzle() {
-        int[] pixels = DDSReader.read(this.data, DDSReader.ARGB, 0);
-        pixels = this.unswizzleData(pixels);
-        
-        for (int i = 0; i < pixels.length; ++i) {
-            int pixel = pixels[i];
-            pixels[i] = (pixel & 0xff) << 24 | (pixel & 0xff00) << 8 | (pixel & 0xff0000) >> 8 | (pixel >> 24) & 0xff;
-        }
-        
-        this.cached = new BufferedImage(this.info.width, this.info.height, BufferedImage.TYPE_INT_ARGB);
-        if (this.cached != null)
-            this.cached.setRGB(0, 0, this.info.width, this.info.height, pixels, 0, this.info.width);
+        int width = this.info.width, height = this.info.height;
+        int[] swizzled = DDSReader.read(this.data, DDSReader.ARGB, 0);
+        int[] table = getGTFTable(width, height);
+
+        this.cached = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) this.cached.getRaster().getDataBuffer()).getData();
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int row = table[width + y];
+            for (int x = 0, i = y * width; x < width; ++x, ++i) {
+                int pixel = swizzled[row + table[x]];
+                pixels[i] = (pixel & 0xff) << 24 | (pixel & 0xff00) << 8 | (pixel & 0xff0000) >> 8 | (pixel >> 24) & 0xff;
+            }
+        });
     }
 
     /**
@@ -232,37 +308,14 @@ public class Texture {
      * @return Unswizzled pixels
      */
     public int[] unswizzleData(int[] swizzled) {
-        
-        // NOTE(Aidan): For original source, see:
-        // https://github.com/RPCS3/rpcs3/blob/3d49976b3c0f2d2fe5fbd9dba0419c13b389c6ba/rpcs3/Emu/RSX/rsx_utils.h
-        
+        int width = this.info.width, height = this.info.height;
+        int[] table = getGTFTable(width, height);
         int[] unswizzled = new int[swizzled.length];
-        
-        int log2width = (int) (Math.log(this.info.width) / Math.log(2));
-        int log2height = (int) (Math.log(this.info.height) / Math.log(2));
-        
-        int xMask = 0x55555555;
-	    int yMask = 0xAAAAAAAA;
-        
-        int limitMask = (log2width < log2height) ? log2width : log2height;
-        limitMask = 1 << (limitMask << 1);
-        
-        
-        xMask = (xMask | ~(limitMask - 1));
-        yMask = (yMask & (limitMask - 1));
-        
-        int offsetY = 0, offsetX = 0, offsetX0 = 0, yIncr = limitMask, adv = this.info.width;
-        
-        for (int y = 0; y < this.info.height; ++y) {
-            offsetX = offsetX0;
-            for (int x = 0; x < this.info.width; ++x) {
-                unswizzled[(y * adv) + x] = swizzled[offsetY + offsetX];
-                offsetX = (offsetX - xMask) & xMask;
-            }
-            offsetY = (offsetY - yMask) & yMask;
-            if (offsetY == 0) offsetX0 += yIncr;
+        for (int y = 0; y < height; ++y) {
+            int row = table[width + y];
+            for (int x = 0; x < width; ++x)
+                unswizzled[(y * width) + x] = swizzled[row + table[x]];
         }
-
         return unswizzled;
     }
 
@@ -271,9 +324,9 @@ public class Texture {
      * @return Converted texture
      */
     public BufferedImage getImage() {
-        if (this.cached != null) 
-            return this.cached;
-        return Images.fromDDS(this.data);
+        if (this.cached == null && this.data != null) 
+            this.cached = Images.fromDDS(this.data);
+        return this.cached;
     }
 
     /**
@@ -289,10 +342,14 @@ public class Texture {
      * @return Scaled ImageIcon of Texture
      */
     public ImageIcon getImageIcon(int width, int height) {
-        if (cached == null)
-            cached = getImage();
-        if (cached != null)
-            return Images.getImageIcon(cached, width, height);
+        BufferedImage image = this.cached;
+        if (image == null && this.data != null) {
+            if (this.preview == null || Math.max(this.preview.getWidth(), this.preview.getHeight()) < Math.max(width, height))
+                this.preview = Images.fromDDS(this.data, width, height);
+            image = this.preview;
+        }
+        if (image != null)
+            return Images.getImageIcon(image, width, height);
         else return null;
     }
 
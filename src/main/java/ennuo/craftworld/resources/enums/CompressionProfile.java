@@ -0,0 +1,17 @@
+package ennuo.craftworld.resources.enums;
+
+import java.util.zip.Deflater;
+
+/**
+ * Trade-off between speed and size when compressing resources,
+ * chunks that don't get any smaller are always stored as is.
+ */
+public enum CompressionProfile {
+    FAST(Deflater.BEST_SPEED),
+    BALANCED(6),
+    MAX(Deflater.BEST_COMPRESSION);
+    
+    public final int level;
+    
+    private CompressionProfile(int level) { this.level = level; }
+}
@@ -10,8 +10,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -54,6 +60,38 @@ public class FileIO {
         return true;
     }
 
+    /**
+     * Writes a file through a temporary file that replaces the original
+     * once it's been flushed, so a failed write never leaves a partial file behind.
+     * @param data Data to write
+     * @param path Path to write to
+     * @return Whether or not the operation was successful
+     */
+    public static boolean writeAtomic(byte[] data, String path) {
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            System.out.println("Writing file to " + path);
+            try (FileChannel channel = FileChannel.open(temp, 
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(true);
+            }
+            try { Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE); }
+            catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            System.err.println("Failed to write file to " + path);
+            try { Files.deleteIfExists(temp); }
+            catch (IOException e) {}
+            return false;
+        }
+        return true;
+    }
+
     public static BufferedImage readBufferedImage(String path) {
         BufferedImage image = null;
         File file = new File(path);
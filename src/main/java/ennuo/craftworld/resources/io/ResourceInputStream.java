@@ -0,0 +1,217 @@
+package ennuo.craftworld.resources.io;
+
+import ennuo.craftworld.resources.Resource;
+import ennuo.craftworld.resources.ResourceHeader;
+import ennuo.craftworld.resources.enums.ResourceType;
+import ennuo.craftworld.resources.enums.SerializationMethod;
+import ennuo.craftworld.utilities.TEA;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the decompressed data of a resource, one chunk at a time.
+ *
+ * Unlike Resource, the decompressed data is never held in memory all at once,
+ * chunks are inflated straight out of the source buffer as they're read, which
+ * can be a mapped view of an archive. Encrypted resources still have to be
+ * decrypted as a whole before they can be read, since TEA works on the entire block.
+ * Data that isn't a resource is read as is, the same as Resource does.
+ */
+public class ResourceInputStream extends InputStream {
+    private final ByteBuffer source;
+    private ByteBuffer current;
+
+    /**
+     * Compressed chunks that haven't been inflated yet.
+     */
+    private ByteBuffer streams;
+
+    private int[] compressed;
+    private int[] decompressed;
+    private int chunk = 0;
+
+    private byte[] buffer;
+    private Inflater inflater;
+
+    /**
+     * Creates a stream over the decompressed data of a resource.
+     * @param data Resource to read
+     * @throws IOException If the resource is malformed
+     */
+    public ResourceInputStream(byte[] data) throws IOException { this(ByteBuffer.wrap(data)); }
+
+    /**
+     * Creates a stream over the decompressed data of a resource,
+     * reading from the position to the limit of the buffer.
+     * @param data Resource to read
+     * @throws IOException If the resource is malformed
+     */
+    public ResourceInputStream(ByteBuffer data) throws IOException {
+        this.source = data.slice();
+        try { this.process(); }
+        catch (RuntimeException ex) { throw new IOException("Resource is malformed!", ex); }
+    }
+
+    private void process() throws IOException {
+        ByteBuffer data = this.source;
+        if (data.remaining() < 0xb) { this.current = data; return; }
+
+        ResourceHeader header = new ResourceHeader(data, false);
+        ResourceType type = header.type;
+        SerializationMethod method = header.method;
+        if (type == ResourceType.INVALID || method == SerializationMethod.UNKNOWN) {
+            this.current = data;
+            return;
+        }
+
+        data.position(header.headerSize);
+        switch (method) {
+            case TEXT:
+                this.current = data.slice();
+                return;
+            case TEXTURE:
+                if (type != ResourceType.TEXTURE) break;
+                this.inflate(data);
+                return;
+            case BINARY:
+            case ENCRYPTED_BINARY:
+                if (type == ResourceType.STATIC_MESH) break;
+                int dependencyTableOffset = header.dependencyTableOffset;
+                boolean isCompressed = header.isCompressed;
+
+                ByteBuffer body;
+                if (method == SerializationMethod.ENCRYPTED_BINARY) {
+                    int size = data.getInt(), padding = 0;
+                    if (size % 4 != 0)
+                        padding = 4 - (size % 4);
+                    byte[] encrypted = new byte[size + padding];
+                    data.get(encrypted);
+                    TEA.decryptInPlace(encrypted);
+                    body = ByteBuffer.wrap(encrypted);
+                    body.position(padding);
+                } else {
+                    body = data.duplicate();
+                    if (dependencyTableOffset != -1)
+                        body.limit(dependencyTableOffset);
+                }
+
+                if (isCompressed) this.inflate(body.slice());
+                else this.current = body.slice();
+                return;
+            default: break;
+        }
+
+        // Static meshes and textures with extra headers have to be decoded in full.
+        byte[] resource = new byte[data.limit()];
+        data.position(0);
+        data.get(resource);
+        byte[] decoded = new Resource(resource).handle.data;
+        if (decoded == null) throw new IOException("Failed to decompress resource!");
+        this.current = ByteBuffer.wrap(decoded);
+    }
+
+    /**
+     * Reads the chunk table of a compressed stream, leaving the chunks to be inflated later.
+     * @param data Buffer positioned at the compressed stream
+     */
+    private void inflate(ByteBuffer data) {
+        data.getShort(); // Some flag? Always 0x0001
+        int chunks = data.getShort() & 0xFFFF;
+        if (chunks == 0) {
+            this.current = data.slice();
+            return;
+        }
+
+        this.compressed = new int[chunks];
+        this.decompressed = new int[chunks];
+        int maxSize = 0;
+        for (int i = 0; i < chunks; ++i) {
+            this.compressed[i] = data.getShort() & 0xFFFF;
+            this.decompressed[i] = data.getShort() & 0xFFFF;
+            maxSize = Math.max(maxSize, this.decompressed[i]);
+        }
+
+        this.current = ByteBuffer.allocate(0);
+        this.buffer = new byte[maxSize];
+        this.inflater = new Inflater();
+        this.streams = data;
+    }
+
+    /**
+     * Inflates the next chunk of the stream.
+     * @return Whether or not there was another chunk
+     */
+    private boolean next() throws IOException {
+        if (this.compressed == null || this.chunk == this.compressed.length) return false;
+
+        int compressedSize = this.compressed[this.chunk];
+        int decompressedSize = this.decompressed[this.chunk];
+        this.chunk++;
+
+        if (this.streams.remaining() < compressedSize)
+            throw new IOException("Compressed stream is truncated!");
+        ByteBuffer input = this.streams.slice();
+        input.limit(compressedSize);
+        this.streams.position(this.streams.position() + compressedSize);
+
+        if (compressedSize == decompressedSize) {
+            this.current = input;
+            return true;
+        }
+
+        this.inflater.reset();
+        this.inflater.setInput(input);
+        try {
+            int length = 0;
+            while (length < decompressedSize && !this.inflater.finished()) {
+                int count = this.inflater.inflate(this.buffer, length, decompressedSize - length);
+                if (count == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) break;
+                length += count;
+            }
+            if (length != decompressedSize)
+                throw new IOException("Compressed chunk is truncated!");
+        } catch (DataFormatException ex) { throw new IOException("Compressed chunk is invalid!", ex); }
+
+        this.current = ByteBuffer.wrap(this.buffer, 0, decompressedSize);
+        return true;
+    }
+
+    /**
+     * Gets a channel view of this stream.
+     * @return Channel reading from this stream
+     */
+    public ReadableByteChannel getChannel() { return Channels.newChannel(this); }
+
+    @Override
+    public int read() throws IOException {
+        while (!this.current.hasRemaining())
+            if (!this.next()) return -1;
+        return this.current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (!this.current.hasRemaining())
+            if (!this.next()) return -1;
+        int count = Math.min(len, this.current.remaining());
+        this.current.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() { return this.current.remaining(); }
+
+    @Override
+    public void close() {
+        if (this.inflater != null) this.inflater.end();
+        this.inflater = null;
+        this.compressed = null;
+        this.current = ByteBuffer.allocate(0);
+    }
+}
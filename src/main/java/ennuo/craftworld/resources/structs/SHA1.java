@@ -2,63 +2,131 @@ package ennuo.craftworld.resources.structs;
 
 import ennuo.craftworld.utilities.Bytes;
 import ennuo.craftworld.utilities.StringUtils;
+import java.nio.ByteBuffer;
 
-public class SHA1 {
-    private byte[] hashBytes;
+public class SHA1 implements Comparable<SHA1> {
+    /**
+     * The 20 bytes of the hash, stored big-endian across
+     * two longs and an int, so lookups don't need to touch strings.
+     */
+    private final long high;
+    private final long middle;
+    private final int low;
+
+    /**
+     * Hex representation of the hash, only created when it's requested.
+     */
     private String hashString;
-    
+
     public SHA1() {
-        this.hashBytes = new byte[0x14];
-        this.hashString = Bytes.toHex(this.hashBytes).toLowerCase();
+        this.high = 0;
+        this.middle = 0;
+        this.low = 0;
     }
-    
+
     public SHA1(String hash) {
         if (hash == null || hash.isEmpty())
             throw new NullPointerException("No hash passed to SHA1 constructor.");
-        
+
         if (hash.length() == 41 && hash.startsWith("h"))
             hash = hash.substring(1);
-        
+
         if (hash.length() > 40)
             throw new IllegalArgumentException("SHA1 hash must be 40 characters long!");
-        
+
         // Maybe I should replace this with an error,
         // but I have to actually validate other parts of the
         // UI first before I can do this without causing errors.
         // This is bad design!
         if (hash.length() != 40)
             hash = StringUtils.leftPad(hash, 40);
-        
-        this.hashString = hash.toLowerCase();
-        this.hashBytes = Bytes.toBytes(this.hashString);
+
+        byte[] bytes = Bytes.toBytes(hash);
+        this.high = SHA1.getLong(bytes, 0);
+        this.middle = SHA1.getLong(bytes, 8);
+        this.low = (int) (SHA1.getLong(bytes, 12) & 0xFFFFFFFFL);
     }
-    
+
     public SHA1(byte[] hash) {
         if (hash.length != 0x14) {
-            this.hashBytes = new byte[0x14];
-            System.arraycopy(hash, 0, this.hashBytes, 0, hash.length);
-        } else this.hashBytes = hash;
-        this.hashString = Bytes.toHex(this.hashBytes).toLowerCase();
+            byte[] padded = new byte[0x14];
+            System.arraycopy(hash, 0, padded, 0, hash.length);
+            hash = padded;
+        }
+        this.high = SHA1.getLong(hash, 0);
+        this.middle = SHA1.getLong(hash, 8);
+        this.low = (int) (SHA1.getLong(hash, 12) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Creates a SHA1 from 20 bytes in a buffer.
+     * @param buffer Buffer containing the hash
+     * @param offset Offset of the hash in the buffer
+     */
+    public SHA1(byte[] buffer, int offset) {
+        this.high = SHA1.getLong(buffer, offset);
+        this.middle = SHA1.getLong(buffer, offset + 8);
+        this.low = (int) (SHA1.getLong(buffer, offset + 12) & 0xFFFFFFFFL);
     }
-    
+
+    private static long getLong(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; ++i)
+            value = (value << 8) | (buffer[offset + i] & 0xFFL);
+        return value;
+    }
+
     public static SHA1 fromBuffer(byte[] buffer) {
         SHA1 hash = new SHA1(Bytes.SHA1(buffer));
         return hash;
     }
-    
-    public byte[] getHash() { return this.hashBytes; }
-    
+
+    public static SHA1 fromBuffer(ByteBuffer buffer) {
+        SHA1 hash = new SHA1(Bytes.SHA1(buffer));
+        return hash;
+    }
+
+    public byte[] getHash() {
+        byte[] hash = new byte[0x14];
+        for (int i = 0; i < 8; ++i) {
+            hash[i] = (byte) (this.high >>> (56 - (i * 8)));
+            hash[i + 8] = (byte) (this.middle >>> (56 - (i * 8)));
+        }
+        for (int i = 0; i < 4; ++i)
+            hash[i + 16] = (byte) (this.low >>> (24 - (i * 8)));
+        return hash;
+    }
+
+    /**
+     * Orders hashes by their bytes, which is the same
+     * order as their hex strings, without creating them.
+     */
+    @Override
+    public int compareTo(SHA1 o) {
+        int result = Long.compareUnsigned(this.high, o.high);
+        if (result != 0) return result;
+        result = Long.compareUnsigned(this.middle, o.middle);
+        if (result != 0) return result;
+        return Integer.compareUnsigned(this.low, o.low);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) return true;
         if (!(o instanceof SHA1)) return false;
         SHA1 d = (SHA1)o;
-        return d.toString().equals(this.toString());
+        return d.high == this.high && d.middle == this.middle && d.low == this.low;
     }
-    
+
+    // The hash is already uniformly distributed,
+    // so any of its bits make for a fine hash code.
     @Override
-    public int hashCode() { return this.hashString.hashCode(); }
-    
+    public int hashCode() { return (int) (this.high >>> 32) ^ this.low; }
+
     @Override
-    public String toString() { return this.hashString; }
+    public String toString() {
+        if (this.hashString == null)
+            this.hashString = Bytes.toHex(this.getHash()).toLowerCase();
+        return this.hashString;
+    }
 }
@@ -275,7 +275,7 @@ public class InventoryDetails implements Serializable {
         // I wonder how slow this is...
         Serializer serializer = new Serializer(MAX_SIZE, revision, (byte) 0);
         serializer.struct(this, InventoryDetails.class);
-        return SHA1.fromBuffer(serializer.getBuffer());
+        return SHA1.fromBuffer(serializer.output.view());
     }
     
     private void updateTranslations() {
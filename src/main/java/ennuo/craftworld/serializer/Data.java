@@ -6,7 +6,8 @@ import ennuo.craftworld.resources.io.FileIO;
 import ennuo.craftworld.resources.enums.ResourceType;
 import ennuo.craftworld.resources.structs.Revision;
 import ennuo.craftworld.resources.structs.SHA1;
-import java.nio.ByteBuffer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -16,6 +17,10 @@ import org.joml.Vector3f;
 import org.joml.Vector4f;
 
 public class Data {
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
     public String path;
 
     public byte[] data;
@@ -141,6 +146,21 @@ public class Data {
         return Arrays.copyOfRange(this.data, this.offset - size, this.offset);
     }
 
+    /**
+     * Advances the stream by a number of bytes, making sure they're all in bounds.
+     * Primitives are read straight from the backing array at the returned offset,
+     * so reading them doesn't allocate anything.
+     * @param size Number of bytes to read
+     * @return Offset of the first byte to read
+     */
+    private int advance(int size) {
+        int position = this.offset;
+        this.offset += size;
+        if (this.offset > this.data.length)
+            throw new ArrayIndexOutOfBoundsException("Can't read " + size + " bytes at offset " + position + ", stream is only " + this.data.length + " bytes!");
+        return position;
+    }
+
     /**
      * Reads a boolean from the stream.
      * @return Boolean read from the stream
@@ -191,10 +211,7 @@ public class Data {
      * Reads a short from the stream.
      * @return Short read from the stream
      */
-    public short i16() {
-        byte[] buffer = this.bytes(2);
-        return (short)((buffer[0] << 8) | buffer[1] & 0xFF);
-    }
+    public short i16() { return (short) SHORT.get(this.data, this.advance(2)); }
     
     /**
      * Reads an array of shorts from the stream.
@@ -211,18 +228,15 @@ public class Data {
      * Reads an unsigned short from the stream.
      * @return Short read from the stream
      */
-    public int u16() {
-        byte[] buffer = this.bytes(2);
-        return buffer[0] << 8 & 0xFF00 | buffer[1] & 0xFF;
-    }
+    public int u16() { return ((short) SHORT.get(this.data, this.advance(2))) & 0xFFFF; }
     
     /**
      * Reads a 24-bit integer from the stream
      * @return Integer read from the stream
      */
     public int i24() {
-        byte[] buffer = this.bytes(3);
-        return (buffer[0] & 0xFF) << 16 | (buffer[1] & 0xFF) << 8 | buffer[2] & 0xFF;
+        int position = this.advance(3);
+        return (this.data[position] & 0xFF) << 16 | (this.data[position + 1] & 0xFF) << 8 | this.data[position + 2] & 0xFF;
     }
 
     /**
@@ -249,17 +263,7 @@ public class Data {
      * Reads a long from the stream.
      * @return Long read from the stream
      */
-    public long i64f() {
-        byte[] buffer = this.bytes(8);
-        return (buffer[0] & 0xFFL) << 56L |
-               (buffer[1] & 0xFFL) << 48L |
-               (buffer[2] & 0xFFL) << 40L |
-               (buffer[3] & 0xFFL) << 32L |
-               (buffer[4] & 0xFFL) << 24L |
-               (buffer[5] & 0xFFL) << 16L |
-               (buffer[6] & 0xFFL) << 8L |
-               (buffer[7] & 0xFFL) << 0L;
-    }
+    public long i64f() { return (long) LONG.get(this.data, this.advance(8)); }
     
     /**
      * Reads an array of 32-bit integers from the stream, encoded depending on the revision.
@@ -297,20 +301,13 @@ public class Data {
      * Reads an integer from the stream.
      * @return Integer read from the stream
      */
-    public int i32f() {
-        byte[] buffer = this.bytes(4);
-        return buffer[0] << 24 | (buffer[1] & 0xFF) << 16 | (buffer[2] & 0xFF) << 8 | buffer[3] & 0xFF;
-    }
+    public int i32f() { return (int) INT.get(this.data, this.advance(4)); }
 
     /**
      * Reads a long as an unsigned integer from the stream as 32-bit regardless of revision.
      * @return Unsigned integer read from the stream
      */
-    public long u32f() {
-        return ByteBuffer.wrap(this.bytes(4))
-            .order(ByteOrder.BIG_ENDIAN)
-            .getInt() & 0xFFFFFFFFL;
-    }
+    public long u32f() { return this.i32f() & 0xFFFFFFFFL; }
 
     /**
      * Reads a 32 bit floating point number from the stream.
@@ -369,7 +366,11 @@ public class Data {
      * Reads a SHA1 hash from the stream.
      * @return SHA1 hash read from the stream
      */
-    public SHA1 sha1() { return new SHA1(this.bytes(0x14)); }
+    public SHA1 sha1() {
+        this.offset += 0x14;
+        if (this.offset > this.length) return new SHA1();
+        return new SHA1(this.data, this.offset - 0x14);
+    }
 
     /**
      * Reads a resource reference from the stream with a short flag.
@@ -430,7 +431,10 @@ public class Data {
      */
     public String str(int size) {
         if (size == 0) return "";
-        return new String(this.bytes(size), StandardCharsets.US_ASCII).replace("\0", "");
+        int position = this.offset;
+        this.offset += size;
+        if (this.offset > this.data.length) return "";
+        return new String(this.data, position, size, StandardCharsets.US_ASCII).replace("\0", "");
     }
 
     /**
@@ -440,8 +444,11 @@ public class Data {
     public String str16() {
         int size = this.i32();
         if ((this.compressionFlags & CompressionFlags.USE_COMPRESSED_INTEGERS) == 0) size *= 2;
-        byte[] data = this.bytes(size);
-        return new String(data, StandardCharsets.UTF_16BE);
+        if (size == 0) return "";
+        int position = this.offset;
+        this.offset += size;
+        if (this.offset > this.data.length) return "";
+        return new String(this.data, position, size, StandardCharsets.UTF_16BE);
     }
 
     /**
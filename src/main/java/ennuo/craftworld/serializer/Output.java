@@ -4,7 +4,8 @@ import ennuo.craftworld.resources.enums.CompressionFlags;
 import ennuo.craftworld.resources.structs.Revision;
 import ennuo.craftworld.resources.structs.SHA1;
 import ennuo.craftworld.types.data.ResourceDescriptor;
-import ennuo.craftworld.utilities.Bytes;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
@@ -16,6 +17,16 @@ import org.joml.Vector3f;
 import org.joml.Vector4f;
 
 public class Output {
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Backing buffer of the stream, it grows whenever a write doesn't fit,
+     * so the size passed to the constructor is only an initial capacity.
+     */
     public byte[] buffer;
     public int offset;
     public int length;
@@ -25,6 +36,11 @@ public class Output {
 
     public HashSet<ResourceDescriptor> dependencies = new HashSet<ResourceDescriptor>();
 
+    /**
+     * Creates a memory output stream with a default initial capacity.
+     */
+    public Output() { this(0x1000); }
+
     /**
      * Creates a memory output stream with specified size.
      * @param size Size of buffer to create
@@ -97,6 +113,23 @@ public class Output {
             this.compressionFlags = 0x7;
     }
     
+    /**
+     * Makes sure there's room for a number of bytes at the current offset,
+     * growing the buffer if there isn't.
+     * @param size Number of bytes about to be written
+     * @return Offset to write the bytes at
+     */
+    private int reserve(int size) {
+        int position = this.offset;
+        if (position + size > this.buffer.length) {
+            int capacity = Math.max(this.buffer.length * 2, position + size);
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, 0x10));
+            this.length = this.buffer.length;
+        }
+        this.offset = position + size;
+        return position;
+    }
+
     /**
      * Writes a UTF-16 character array to the stream.
      * @param value String value to write
@@ -155,9 +188,18 @@ public class Output {
      * @param bytes Bytes to write
      * @return This output stream
      */
-    public Output bytes(byte[] bytes) {
-        for (int i = 0; i < bytes.length; ++offset, ++i)
-            buffer[offset] = bytes[i];
+    public Output bytes(byte[] bytes) { return this.bytes(bytes, 0, bytes.length); }
+
+    /**
+     * Writes part of a byte array to the stream.
+     * @param bytes Source of the bytes to write
+     * @param offset Offset of the first byte to write
+     * @param size Number of bytes to write
+     * @return This output stream
+     */
+    public Output bytes(byte[] bytes, int offset, int size) {
+        int position = this.reserve(size);
+        System.arraycopy(bytes, offset, this.buffer, position, size);
         return this;
     }
 
@@ -174,8 +216,8 @@ public class Output {
      * @return This output stream
      */
     public Output pad(int size) {
-        for (int i = 0; i < size; ++i)
-            this.i8((byte) 0);
+        int position = this.reserve(size);
+        Arrays.fill(this.buffer, position, position + size, (byte) 0);
         return this;
     }
 
@@ -192,8 +234,8 @@ public class Output {
      * @return This output stream
      */
     public Output i8(byte value) {
-        buffer[offset] = value;
-        offset += 1;
+        int position = this.reserve(1);
+        this.buffer[position] = value;
         return this;
     }
     
@@ -205,9 +247,7 @@ public class Output {
     public Output i8a(byte[] values) {
         if (values == null) { this.i32(0); return this; }
         this.i32(values.length);
-        for (byte value : values)
-            this.i8(value);
-        return this;
+        return this.bytes(values);
     }
 
     /**
@@ -273,16 +313,9 @@ public class Output {
      * @return This output stream
      */
     public Output i64f(long value) { 
-        return this.bytes(new byte[] {
-            (byte) (value >>> 56),
-            (byte) (value >>> 48),
-            (byte) (value >>> 40),
-            (byte) (value >>> 32),
-            (byte) (value >>> 24),
-            (byte) (value >>> 16),
-            (byte) (value >>> 8),
-            (byte) (value)
-        });
+        int position = this.reserve(8);
+        LONG.set(this.buffer, position, value);
+        return this;
     }
     
     /**
@@ -301,7 +334,11 @@ public class Output {
      * @param value Short to write
      * @return This output stream
      */
-    public Output i16(short value) { return this.bytes(Bytes.toBytes(value)); }
+    public Output i16(short value) { 
+        int position = this.reserve(2);
+        SHORT.set(this.buffer, position, value);
+        return this;
+    }
     
     /**
      * Writes an array of shorts to the stream.
@@ -321,8 +358,8 @@ public class Output {
      * @return This output stream
      */
     public Output i16LE(short value) {
-        byte[] bytes = Bytes.toBytes(value);
-        this.i8(bytes[1]); this.i8(bytes[0]);
+        int position = this.reserve(2);
+        SHORT_LE.set(this.buffer, position, value);
         return this;
     }
 
@@ -331,21 +368,29 @@ public class Output {
      * @param value Integer to write
      * @return This output stream
      */
-    public Output i32f(int value) { return this.bytes(Bytes.toBytes(value)); }
+    public Output i32f(int value) { 
+        int position = this.reserve(4);
+        INT.set(this.buffer, position, value);
+        return this;
+    }
 
     /**
      * Writes a long as an unsigned integer to the stream as 32-bit regardless of revision.
      * @param value Unsigned integer to write
      * @return This output stream
      */
-    public Output u32f(long value) { return this.bytes(Bytes.toBytes(value)); }
+    public Output u32f(long value) { return this.i32f((int) value); }
     
     /**
      * Writes a long as an unsigned integer to the stream as 32-bit in little endian regardless of revision.
      * @param value Unsigned integer to write
      * @return This output stream
      */
-    public Output u32LEf(long value) { return this.bytes(Bytes.toBytesLE(value)); }
+    public Output u32LEf(long value) { 
+        int position = this.reserve(4);
+        INT_LE.set(this.buffer, position, (int) value);
+        return this;
+    }
 
     /**
      * Writes a 7-bit encoded integer to the stream.
@@ -459,25 +504,14 @@ public class Output {
      * @param value Float to write 
      * @return This output stream
      */
-    public Output f32(float value) { 
-        return this.bytes(Bytes.toBytes(Float.floatToIntBits(value))); 
-    }
+    public Output f32(float value) { return this.i32f(Float.floatToIntBits(value)); }
     
     /**
      * Writes a 32 bit floating point number to the stream in little endian.
      * @param value Float to write
      * @return This output stream
      */
-    public Output f32LE(float value) {
-        int bits = Float.floatToRawIntBits(value);
-        byte[] byteBuffer = ByteBuffer
-                .allocate(4)
-                .order(ByteOrder.LITTLE_ENDIAN)
-                .putInt(bits)
-                .array();
-        this.bytes(byteBuffer);
-        return this;
-    }
+    public Output f32LE(float value) { return this.u32LEf(Float.floatToRawIntBits(value)); }
 
     /**
      * Writes an array of 32 bit floating point numbers to the stream.
@@ -533,7 +567,16 @@ public class Output {
      * @return This output stream
      */
     public Output shrink() { 
-        this.buffer = Arrays.copyOfRange(this.buffer, 0, this.offset); 
+        if (this.buffer.length != this.offset) {
+            this.buffer = Arrays.copyOfRange(this.buffer, 0, this.offset); 
+            this.length = this.buffer.length;
+        }
         return this;
     }
+
+    /**
+     * Gets a view of everything written to the stream so far, without copying it.
+     * @return View of the written bytes
+     */
+    public ByteBuffer view() { return ByteBuffer.wrap(this.buffer, 0, this.offset).slice(); }
 }
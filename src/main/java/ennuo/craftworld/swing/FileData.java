@@ -19,6 +19,48 @@ public abstract class FileData {
     public long lastGUID = 0x00160000L;
 
     public boolean shouldSave = false;
+
+    private SearchIndex searchIndex;
+
+    /**
+     * Takes a snapshot of the tree to rebuild the search index from, has to be
+     * called on the event dispatch thread since the tree isn't thread safe.
+     * @return Snapshot of the tree, or null if the search index is up to date
+     */
+    public synchronized SearchIndex.Snapshot getSearchSnapshot() {
+        if (this.root == null) return null;
+        if (this.searchIndex != null && !this.searchIndex.isStale(this.root)) return null;
+        return new SearchIndex.Snapshot(this.root);
+    }
+
+    /**
+     * Gets the search index of the tree, building it from a snapshot if one was taken.
+     * Safe to call off the event dispatch thread.
+     * @param snapshot Snapshot from getSearchSnapshot, or null to use the current index
+     * @return Search index of the tree
+     */
+    public SearchIndex getSearchIndex(SearchIndex.Snapshot snapshot) {
+        if (snapshot == null) {
+            synchronized (this) { return this.searchIndex; }
+        }
+        // A search might have been queued before the index from
+        // the same snapshot of the tree finished building.
+        synchronized (this) {
+            if (this.searchIndex != null && this.searchIndex.isBuiltFrom(snapshot))
+                return this.searchIndex;
+        }
+        SearchIndex index = new SearchIndex(snapshot);
+        synchronized (this) { this.searchIndex = index; }
+        return index;
+    }
+
+    /**
+     * Marks the search index as out of date, should be called when entries are edited in place.
+     */
+    public void invalidateSearch() {
+        if (this.root != null) this.root.touch();
+    }
+
     public FileNode addNode(FileEntry entry) { return Nodes.addNode(this.root, entry); }
     public FileNode addNode(String string) { return Nodes.addNode(this.root, null, string); }
     public boolean save(String path) { return false; }
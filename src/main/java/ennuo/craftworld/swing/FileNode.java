@@ -1,8 +1,11 @@
 package ennuo.craftworld.swing;
 
 import ennuo.craftworld.types.FileEntry;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeNode;
 
 public class FileNode extends DefaultMutableTreeNode {
@@ -14,6 +17,26 @@ public class FileNode extends DefaultMutableTreeNode {
   
   public boolean isVisible = true;
   
+  /**
+   * Children of this node by name, so paths can be
+   * resolved without scanning every sibling.
+   */
+  private HashMap<String, FileNode> lookup;
+  
+  /**
+   * Visible children of this node, and how many of them are files,
+   * built the first time the filtered tree asks for them.
+   */
+  private ArrayList<FileNode> visibleChildren;
+  private int visibleFileCount;
+  
+  /**
+   * Number of times the tree under this node has been
+   * modified, only tracked on the root of the tree.
+   * Read by the search index from other threads.
+   */
+  private volatile int version = 0;
+  
   public FileNode(Object userObject, String path, FileEntry entry) {
     super(userObject);
     this.entry = entry;
@@ -21,23 +44,88 @@ public class FileNode extends DefaultMutableTreeNode {
     this.header = (String)userObject;
   }
   
+  /**
+   * Finds the first child with a name.
+   * @param name Name of the child
+   * @return Child with name, or null if it doesn't exist
+   */
+  public FileNode getChild(String name) {
+    if (this.lookup == null) return null;
+    return this.lookup.get(name);
+  }
+  
+  /**
+   * Drops the cached visible children, should be called
+   * whenever the visibility of any children changes.
+   */
+  public void invalidate() { this.visibleChildren = null; }
+  
+  private ArrayList<FileNode> getVisibleChildren() {
+    if (this.visibleChildren != null) return this.visibleChildren;
+    ArrayList<FileNode> visible = new ArrayList<>();
+    int fileCount = 0;
+    if (this.children != null) {
+      Enumeration<TreeNode> e = this.children.elements();
+      while (e.hasMoreElements()) {
+        FileNode node = (FileNode)e.nextElement();
+        if (!node.isVisible) continue;
+        visible.add(node);
+        if (node.entry != null)
+          fileCount++; 
+      } 
+    } 
+    this.visibleFileCount = fileCount;
+    this.visibleChildren = visible;
+    return visible;
+  }
+  
+  public int getVersion() { return this.version; }
+  
+  /**
+   * Marks the tree this node belongs to as modified.
+   */
+  public void touch() { ((FileNode)getRoot()).version++; }
+  
+  @Override
+  public void insert(MutableTreeNode child, int index) {
+    super.insert(child, index);
+    this.invalidate();
+    this.touch();
+    if (this.lookup == null)
+      this.lookup = new HashMap<>();
+    FileNode node = (FileNode)child;
+    if (node.header != null)
+      this.lookup.putIfAbsent(node.header, node);
+  }
+  
+  @Override
+  public void remove(int index) {
+    FileNode node = (FileNode)getChildAt(index);
+    super.remove(index);
+    this.invalidate();
+    this.touch();
+    if (node.header == null || this.lookup.get(node.header) != node) return;
+    this.lookup.remove(node.header);
+    // Another child might have the same name.
+    Enumeration<TreeNode> e = this.children.elements();
+    while (e.hasMoreElements()) {
+      FileNode sibling = (FileNode)e.nextElement();
+      if (node.header.equals(sibling.header)) {
+        this.lookup.put(sibling.header, sibling);
+        break;
+      } 
+    } 
+  }
+  
   public FileNode getChildAt(int index, boolean isFiltered) {
     if (!isFiltered)
       return (FileNode)getChildAt(index); 
     if (this.children == null)
       throw new ArrayIndexOutOfBoundsException("No children!"); 
-    int realIndex = -1;
-    int visibleIndex = -1;
-    Enumeration<TreeNode> e = this.children.elements();
-    while (e.hasMoreElements()) {
-      FileNode node = (FileNode)e.nextElement();
-      if (node.isVisible)
-        visibleIndex++; 
-      realIndex++;
-      if (visibleIndex == index)
-        return (FileNode)this.children.elementAt(realIndex); 
-    } 
-    throw new ArrayIndexOutOfBoundsException("Index unmatched!");
+    ArrayList<FileNode> visible = this.getVisibleChildren();
+    if (index < 0 || index >= visible.size())
+      throw new ArrayIndexOutOfBoundsException("Index unmatched!");
+    return visible.get(index);
   }
   
   public int getChildCount(boolean isFiltered, boolean noFolders) {
@@ -45,17 +133,10 @@ public class FileNode extends DefaultMutableTreeNode {
       return getChildCount(); 
     if (this.children == null)
       return 0; 
-    int count = 0;
-    Enumeration<TreeNode> e = this.children.elements();
-    while (e.hasMoreElements()) {
-      FileNode node = (FileNode)e.nextElement();
-      if (node.isVisible && !noFolders)
-        count++; 
-      if (node.isVisible && noFolders && 
-        node.entry != null)
-        count++; 
-    } 
-    return count;
+    ArrayList<FileNode> visible = this.getVisibleChildren();
+    if (noFolders)
+      return this.visibleFileCount;
+    return visible.size();
   }
   
   public void delete() {
@@ -4,20 +4,13 @@ import ennuo.craftworld.types.FileEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreeNode;
 
 public class Nodes {
   public static int childIndex(FileNode node, String term) {
-    Enumeration<TreeNode> children = node.children();
-    DefaultMutableTreeNode child = null;
-    int index = -1;
-    while (children.hasMoreElements() && index < 0) {
-      child = (DefaultMutableTreeNode)children.nextElement();
-      if (child.getUserObject() != null && term.equals(child.getUserObject()))
-        index = node.getIndex(child); 
-    } 
-    return index;
+    FileNode child = node.getChild(term);
+    if (child == null) return -1;
+    return node.getIndex(child);
   }
   
   public static void loadChildren(ArrayList<FileNode> nodes, FileNode fishNode, boolean isFiltered) {
@@ -32,19 +25,14 @@ public class Nodes {
   }
   
   public static int filter(FileNode root, SearchParameters params) {
+      root.invalidate();
       int visibleCount = 0;
       if (root.getChildCount(false, false) >= 0)
         for (Enumeration<TreeNode> e = root.children(); e.hasMoreElements(); ) {
             FileNode node = (FileNode) e.nextElement();
             boolean isVisible = false;
             if (node.entry != null) {
-                if (params.pointer != null) {
-                    if (params.pointer.hash != null) 
-                        isVisible = node.entry.hash.equals(params.pointer.hash);
-                    else isVisible = node.entry.GUID == params.pointer.GUID;
-                }
-                else if (node.entry.path.contains(params.path)) 
-                    isVisible = true;
+                isVisible = params.matches(node.entry.path.toLowerCase(), node.entry.hash, node.entry.GUID);
                 node.isVisible = isVisible;  
                 if (isVisible)
                     visibleCount++;
@@ -67,8 +55,8 @@ public class Nodes {
         strings = override.split("/");
     String relativePath = "";
     for (int i = 0; i < strings.length; i++) {
-      int index = Nodes.childIndex(node, strings[i]);
-      if (index == -1) {
+      FileNode existing = node.getChild(strings[i]);
+      if (existing == null) {
         FileNode child = new FileNode(strings[i], relativePath, null);
         if (i + 1 == strings.length)
           child.entry = entry; 
@@ -80,7 +68,7 @@ public class Nodes {
             child.entry = entry; 
             node.insert(child, node.getChildCount());
         } else 
-            node = (FileNode)node.getChildAt(index);   
+            node = existing;   
       }
       relativePath = relativePath + (strings[i] + "/");
     } 
@@ -0,0 +1,266 @@
+package ennuo.craftworld.swing;
+
+import ennuo.craftworld.resources.structs.SHA1;
+import ennuo.craftworld.types.FileEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.function.Consumer;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Search index over the entries of a FileNode tree.
+ *
+ * Paths are indexed by every trigram they contain, so a query only has to check
+ * the entries that contain all of its trigrams, while SHA1, GUID and type queries
+ * are looked up directly. The index is built from a snapshot of the tree, which has
+ * to be taken on the event dispatch thread, use isStale to check if the tree has been
+ * modified since.
+ */
+public class SearchIndex {
+    /**
+     * Growable list of entry indices, always in ascending order.
+     */
+    private static class Postings {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        private void add(int value) {
+            if (this.size != 0 && this.values[this.size - 1] == value) return;
+            if (this.size == this.values.length)
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            this.values[this.size++] = value;
+        }
+
+        private int[] toArray() { return Arrays.copyOf(this.values, this.size); }
+    }
+
+    /**
+     * Copy of everything the index needs from a tree, so the tree
+     * only has to be walked on the event dispatch thread.
+     */
+    public static class Snapshot {
+        private final FileNode root;
+        private final int version;
+
+        /**
+         * Every node in the tree, and the ones that hold entries.
+         */
+        private final FileNode[] nodes;
+        private final FileNode[] files;
+
+        /**
+         * Path, SHA1 and GUID of the entry of each file node.
+         */
+        private final String[] paths;
+        private final SHA1[] hashes;
+        private final long[] GUIDs;
+
+        /**
+         * Takes a snapshot of a tree, has to be called on the event dispatch thread.
+         * @param root Root of the tree
+         */
+        public Snapshot(FileNode root) {
+            this.root = root;
+            this.version = root.getVersion();
+
+            ArrayList<FileNode> nodes = new ArrayList<>();
+            ArrayList<FileNode> files = new ArrayList<>();
+            Snapshot.collect(root, nodes, files);
+            this.nodes = nodes.toArray(new FileNode[nodes.size()]);
+            this.files = files.toArray(new FileNode[files.size()]);
+
+            this.paths = new String[this.files.length];
+            this.hashes = new SHA1[this.files.length];
+            this.GUIDs = new long[this.files.length];
+            for (int i = 0; i < this.files.length; ++i) {
+                FileEntry entry = this.files[i].entry;
+                this.paths[i] = entry.path.toLowerCase();
+                this.hashes[i] = entry.hash;
+                this.GUIDs[i] = entry.GUID;
+            }
+        }
+
+        private static void collect(FileNode node, ArrayList<FileNode> nodes, ArrayList<FileNode> files) {
+            if (node.getChildCount() == 0) return;
+            for (Enumeration<TreeNode> e = node.children(); e.hasMoreElements(); ) {
+                FileNode child = (FileNode) e.nextElement();
+                nodes.add(child);
+                if (child.entry != null) files.add(child);
+                else Snapshot.collect(child, nodes, files);
+            }
+        }
+    }
+
+    private final FileNode root;
+    private final int version;
+
+    private final FileNode[] nodes;
+    private final FileNode[] files;
+    private final String[] paths;
+    private final SHA1[] entryHashes;
+    private final long[] entryGUIDs;
+
+    private final HashMap<Long, Postings> trigrams = new HashMap<>();
+    private final HashMap<SHA1, Postings> hashes = new HashMap<>();
+    private final HashMap<Long, Postings> GUIDs = new HashMap<>();
+    private final HashMap<String, Postings> types = new HashMap<>();
+
+    /**
+     * Builds a search index from a snapshot of a tree, safe to call off the event dispatch thread.
+     * @param snapshot Snapshot of the tree
+     */
+    public SearchIndex(Snapshot snapshot) {
+        this.root = snapshot.root;
+        this.version = snapshot.version;
+        this.nodes = snapshot.nodes;
+        this.files = snapshot.files;
+        this.paths = snapshot.paths;
+        this.entryHashes = snapshot.hashes;
+        this.entryGUIDs = snapshot.GUIDs;
+
+        for (int i = 0; i < this.files.length; ++i) {
+            String path = this.paths[i];
+
+            for (int j = 0; j + 3 <= path.length(); ++j)
+                this.trigrams.computeIfAbsent(SearchIndex.getTrigram(path, j), k -> new Postings()).add(i);
+            if (this.entryHashes[i] != null)
+                this.hashes.computeIfAbsent(this.entryHashes[i], k -> new Postings()).add(i);
+            this.GUIDs.computeIfAbsent(this.entryGUIDs[i], k -> new Postings()).add(i);
+
+            int extension = path.lastIndexOf('.');
+            if (extension != -1 && path.indexOf('/', extension) == -1)
+                this.types.computeIfAbsent(path.substring(extension + 1), k -> new Postings()).add(i);
+        }
+    }
+
+    private static long getTrigram(String path, int index) {
+        return ((long) path.charAt(index) << 32) | ((long) path.charAt(index + 1) << 16) | path.charAt(index + 2);
+    }
+
+    /**
+     * Checks if the tree has been modified since the index was built.
+     * @param root Current root of the tree
+     * @return Whether or not the index needs to be rebuilt
+     */
+    public boolean isStale(FileNode root) {
+        return this.root != root || this.version != root.getVersion();
+    }
+
+    /**
+     * Checks if the index was built from the same version of the tree as a snapshot.
+     * @param snapshot Snapshot of the tree
+     * @return Whether or not the snapshot would build the same index
+     */
+    public boolean isBuiltFrom(Snapshot snapshot) {
+        return this.root == snapshot.root && this.version == snapshot.version;
+    }
+
+    /**
+     * Gets the entries that could match a query, without checking them.
+     * @param params Search parameters
+     * @return Indices of possible matches, in tree order
+     */
+    private int[] getCandidates(SearchParameters params) {
+        ArrayList<Postings> lists = new ArrayList<>();
+        if (params.pointer != null) {
+            Postings postings = null;
+            if (params.pointer.hash != null) postings = this.hashes.get(params.pointer.hash);
+            else postings = this.GUIDs.get(params.pointer.GUID);
+            if (postings == null) return new int[0];
+            lists.add(postings);
+        } else {
+            for (int i = 0; i + 3 <= params.path.length(); ++i) {
+                Postings postings = this.trigrams.get(SearchIndex.getTrigram(params.path, i));
+                if (postings == null) return new int[0];
+                lists.add(postings);
+            }
+        }
+
+        if (params.type != null) {
+            Postings postings = this.types.get(params.type);
+            if (postings == null) return new int[0];
+            lists.add(postings);
+        }
+
+        if (lists.isEmpty()) {
+            int[] all = new int[this.files.length];
+            for (int i = 0; i < all.length; ++i) all[i] = i;
+            return all;
+        }
+
+        // Start from the rarest list, so the candidates shrink as fast as possible.
+        lists.sort(Comparator.comparingInt(postings -> postings.size));
+        int[] candidates = lists.get(0).toArray();
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count != 0; ++i) {
+            Postings postings = lists.get(i);
+            int kept = 0;
+            for (int j = 0, k = 0; j < count && k < postings.size; ) {
+                if (candidates[j] < postings.values[k]) j++;
+                else if (candidates[j] > postings.values[k]) k++;
+                else { candidates[kept++] = candidates[j]; j++; k++; }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * Runs a query, passing matching nodes to a consumer in batches as they're found.
+     * Stops early if the current thread is interrupted.
+     * @param params Search parameters
+     * @param batchSize Maximum number of nodes per batch
+     * @param consumer Consumer of each batch of matching nodes
+     * @return Number of matching nodes
+     */
+    public int query(SearchParameters params, int batchSize, Consumer<FileNode[]> consumer) {
+        int[] candidates = this.getCandidates(params);
+        ArrayList<FileNode> batch = new ArrayList<>(Math.min(batchSize, candidates.length));
+        int count = 0;
+        for (int i = 0; i < candidates.length; ++i) {
+            if (Thread.currentThread().isInterrupted()) return count;
+            int index = candidates[i];
+            if (!params.matches(this.paths[index], this.entryHashes[index], this.entryGUIDs[index]))
+                continue;
+            batch.add(this.files[index]);
+            count++;
+            if (batch.size() == batchSize) {
+                consumer.accept(batch.toArray(new FileNode[batch.size()]));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            consumer.accept(batch.toArray(new FileNode[batch.size()]));
+        return count;
+    }
+
+    /**
+     * Hides every node in the tree, ready for the results of a query to be shown.
+     */
+    public void hideAll() {
+        for (FileNode node : this.nodes) {
+            node.isVisible = false;
+            node.invalidate();
+        }
+        this.root.isVisible = false;
+        this.root.invalidate();
+    }
+
+    /**
+     * Shows nodes that matched a query, along with their parent folders.
+     * @param matches Nodes to show
+     */
+    public void show(FileNode[] matches) {
+        for (FileNode node : matches) {
+            while (node != null && !node.isVisible) {
+                node.isVisible = true;
+                FileNode parent = (FileNode) node.getParent();
+                if (parent != null) parent.invalidate();
+                node = parent;
+            }
+        }
+    }
+}
@@ -3,20 +3,59 @@ package ennuo.craftworld.swing;
 import ennuo.craftworld.resources.structs.SHA1;
 import ennuo.craftworld.types.data.ResourceDescriptor;
 import ennuo.craftworld.utilities.StringUtils;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class SearchParameters {
+   private static final Pattern TYPE_REGEX = Pattern.compile("type:\\.?(\\S+)");
+
    public String path;
    public ResourceDescriptor pointer;
-   
+
+   /**
+    * Extension entries have to end with, without the dot.
+    */
+   public String type;
+
    public SearchParameters(String query) {
-        this.path = query.toLowerCase().replaceAll("\\s", "");
-        if (query.startsWith("res:")) {
+        query = query.toLowerCase();
+        Matcher matcher = TYPE_REGEX.matcher(query);
+        if (matcher.find()) {
+            this.type = matcher.group(1);
+            query = matcher.replaceAll("");
+        }
+
+        this.path = query.replaceAll("\\s", "");
+        String res = this.path;
+        if (res.startsWith("res:")) res = res.substring(4);
+        else if (!res.startsWith("g") && !res.startsWith("h")) return;
+        if (res.startsWith("g") && StringUtils.isGUID(res)) {
             this.pointer = new ResourceDescriptor();
-            String res = this.path.substring(4);
-            if (res.startsWith("g"))
-                pointer.GUID = StringUtils.getLong(res);
-            else if (res.startsWith("h") && res.length() == 41)
-                pointer.hash = new SHA1(res.substring(1));
+            pointer.GUID = StringUtils.getLong(res);
+        }
+        else if (res.startsWith("h") && res.length() == 41 && StringUtils.isSHA1(res)) {
+            this.pointer = new ResourceDescriptor();
+            pointer.hash = new SHA1(res.substring(1));
+        }
+        else if (this.path.startsWith("res:"))
+            this.pointer = new ResourceDescriptor();
+   }
+
+   /**
+    * Checks if an entry matches these parameters.
+    * @param path Lowercase path of the entry
+    * @param hash SHA1 of the entry
+    * @param GUID GUID of the entry
+    * @return Whether or not the entry matches
+    */
+   public boolean matches(String path, SHA1 hash, long GUID) {
+        if (this.type != null && !path.endsWith("." + this.type))
+            return false;
+        if (this.pointer != null) {
+            if (this.pointer.hash != null)
+                return this.pointer.hash.equals(hash);
+            return this.pointer.GUID == GUID;
         }
-   }  
+        return path.contains(this.path);
+   }
 }
@@ -14,7 +14,6 @@ import ennuo.craftworld.resources.enums.ResourceType;
 import ennuo.craftworld.resources.enums.SlotType;
 import ennuo.craftworld.resources.structs.InventoryItem;
 import ennuo.craftworld.resources.structs.SlotID;
-import ennuo.craftworld.resources.structs.SortString;
 import ennuo.craftworld.swing.FileData;
 import ennuo.craftworld.swing.FileModel;
 import ennuo.craftworld.swing.FileNode;
@@ -259,13 +258,12 @@ public class BigStreamingFart extends FileData {
 
         Resource originalBigProfile = new Resource(this.rootProfileEntry.data);
 
+        // The output grows as needed, so this only has to be a rough estimate.
         Output output = new Output(
-                (InventoryDetails.MAX_SIZE * itemCount) + (itemCount * 0x12) + (Slot.MAX_SIZE * slotCount + 1)
-                        + (stringCount * SortString.MAX_SIZE + (SortString.MAX_SIZE * itemCount)) + 0xFFFF,
+                (itemCount * 0x100) + (slotCount * 0x100) + (stringCount * 0x40) + 0x1000,
                 originalBigProfile.revision);
         
         new Serializer(output).struct(this.bigProfile, BigProfile.class);
-        output.shrink();
 
         ResourceDescriptor[] dependencies = new ResourceDescriptor[output.dependencies.size()];
         dependencies = output.dependencies.toArray(dependencies);
@@ -396,6 +394,7 @@ public class BigStreamingFart extends FileData {
 
     public boolean edit(FileEntry entry, byte[] data) {
         this.shouldSave = true;
+        this.invalidateSearch();
         
         SHA1 hash = SHA1.fromBuffer(data);
 
@@ -643,7 +642,7 @@ public class BigStreamingFart extends FileData {
             entries[i] = this.entries.get(i);
         entries[entries.length - 1] = this.rootProfileEntry;
         
-        Arrays.sort(entries, (e1, e2) -> e1.hash.toString().compareTo(e2.hash.toString()));
+        Arrays.sort(entries, (e1, e2) -> e1.hash.compareTo(e2.hash));
         
         int size = this.saveKey.length + 0x34 + this.rootProfileEntry.data.length + 0xFFFF;
         for (FileEntry entry : entries)
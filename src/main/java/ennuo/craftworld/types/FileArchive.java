@@ -7,16 +7,25 @@ import ennuo.craftworld.resources.structs.SHA1;
 import ennuo.craftworld.utilities.Bytes;
 import ennuo.craftworld.serializer.Data;
 import ennuo.craftworld.serializer.Output;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.crypto.Mac;
 import javax.swing.JProgressBar;
 
 public class FileArchive {
@@ -32,6 +41,12 @@ public class FileArchive {
         FAR4,
         FAR5
     }
+    
+    /**
+     * Maximum size of a single mapped region, archives larger
+     * than this are split across multiple mappings.
+     */
+    private static final long MAP_REGION_SIZE = 0x40000000L;
 
     public ArchiveType archiveType = ArchiveType.FARC;
 
@@ -50,6 +65,26 @@ public class FileArchive {
     public HashMap<SHA1, FileEntry> lookup = new HashMap<SHA1, FileEntry>();
     
     public int queueSize = 0;
+    
+    /**
+     * Whether or not the archive is memory-mapped instead of
+     * being preloaded or read per entry.
+     */
+    private boolean isMapped = false;
+    
+    /**
+     * Mapped regions of everything before the file table,
+     * only used if the archive is memory-mapped.
+     * Released before anything writes to the archive, and mapped
+     * again the next time an entry is read.
+     */
+    private MappedByteBuffer[] regions;
+    
+    /**
+     * Whether or not the file table on disk should be checked
+     * against the one in memory after saving.
+     */
+    public boolean shouldVerify = false;
 
     public FileArchive() {
         this.archiveType = ArchiveType.FAR4;
@@ -61,6 +96,17 @@ public class FileArchive {
         this.process();
     }
     
+    /**
+     * Creates a FileArchive from file, optionally memory-mapping it.
+     * @param file Path of the FileArchive
+     * @param isMapped Whether entries should be read on demand from a mapping of the file
+     */
+    public FileArchive(File file, boolean isMapped) {
+        this.file = file;
+        this.isMapped = isMapped;
+        this.process();
+    }
+    
     public void refresh() {
         this.hashTable = new byte[0];
         this.entries = new ArrayList<FileEntry>();
@@ -73,9 +119,15 @@ public class FileArchive {
         long begin = System.currentTimeMillis();
         
         this.refresh();
+        this.unmap();
         if (!this.file.exists())
             throw new SerializationException("File archive specified does not exist!");
         
+        try { FileArchiveJournal.recover(this.file); }
+        catch (IOException ex) {
+            throw new SerializationException("An I/O error occurred while recovering the File Archive.");
+        }
+        
         boolean shouldPreload = false;
         byte[] preloadData = null;
         
@@ -103,7 +155,7 @@ public class FileArchive {
                     break;
                 case FAR4:
                     this.tableOffset = this.file.length() - 0x1C - (fatCount * 0x1C);
-                    shouldPreload = true;
+                    shouldPreload = !this.isMapped;
                     break;
                 case FAR5:
                     this.tableOffset = this.file.length() - 0x20 - (fatCount * 0x1C);
@@ -116,6 +168,11 @@ public class FileArchive {
                 archive.readFully(preloadData, 0, preloadData.length);
             }
             
+            // Only the region before the table gets mapped, saving overwrites the end of it
+            // and truncates the file, so the mapping is released before every save.
+            if (this.isMapped)
+                this.map(archive.getChannel());
+            
             this.hashTable = new byte[fatCount * 0x1C];
 
             archive.seek(this.tableOffset);
@@ -203,12 +260,11 @@ public class FileArchive {
         if (entry == null)
             return null;
         if (entry.data != null) return entry.data;
-        try {
-            RandomAccessFile fishArchive = new RandomAccessFile(this.file.getAbsolutePath(), "rw");
+        if (this.isMapped) return this.read(entry.offset, entry.size);
+        try (RandomAccessFile fishArchive = new RandomAccessFile(this.file.getAbsolutePath(), "r")) {
             fishArchive.seek(entry.offset);
             byte[] buffer = new byte[entry.size];
-            fishArchive.read(buffer);
-            fishArchive.close();
+            fishArchive.readFully(buffer);
             entry.data = buffer;
             return buffer;
         } catch (FileNotFoundException ex) {
@@ -219,7 +275,109 @@ public class FileArchive {
         return null;
     } 
     
+    /**
+     * Maps everything before the file table into memory.
+     * @param channel Channel of the archive
+     */
+    private synchronized void map(FileChannel channel) throws IOException {
+        int count = (int) ((this.tableOffset + MAP_REGION_SIZE - 1) / MAP_REGION_SIZE);
+        MappedByteBuffer[] regions = new MappedByteBuffer[count];
+        for (int i = 0; i < count; ++i) {
+            long start = i * MAP_REGION_SIZE;
+            long size = Math.min(MAP_REGION_SIZE, this.tableOffset - start);
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+        this.regions = regions;
+    }
+    
+    /**
+     * Gets the mapped regions of the archive, mapping them again if they were released.
+     * @return Mapped regions, or null if the archive couldn't be mapped
+     */
+    private synchronized MappedByteBuffer[] getRegions() {
+        if (this.regions == null) {
+            try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+                this.map(channel);
+            } catch (IOException ex) {
+                System.err.println("Failed to map FileArchive at " + this.file.getAbsolutePath());
+                return null;
+            }
+        }
+        return this.regions;
+    }
+    
+    /**
+     * Releases the mapped regions of the archive, which has to happen before
+     * anything writes to or truncates it, since some platforms refuse to
+     * resize a file that's still mapped. The regions are only ever copied from
+     * while holding the lock of the archive and never handed out, so nothing
+     * can touch them once they've been released.
+     */
+    synchronized void unmap() {
+        if (this.regions == null) return;
+        for (MappedByteBuffer region : this.regions)
+            FileArchive.release(region);
+        this.regions = null;
+    }
+    
+    private static Object UNSAFE;
+    private static Method INVOKE_CLEANER;
+    static {
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = field.get(null);
+            INVOKE_CLEANER = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            UNSAFE = null;
+            INVOKE_CLEANER = null;
+        }
+    }
+    
+    /**
+     * Unmaps a region right away, instead of whenever it gets garbage collected.
+     * @param region Region to unmap
+     */
+    private static void release(MappedByteBuffer region) {
+        if (INVOKE_CLEANER == null) return;
+        try { INVOKE_CLEANER.invoke(UNSAFE, region); }
+        catch (ReflectiveOperationException | RuntimeException ex) {}
+    }
+    
+    /**
+     * Copies data out of the mapped regions of the archive.
+     * @param offset Offset of the data in the archive
+     * @param size Size of the data
+     * @return Copied data
+     */
+    private synchronized byte[] read(long offset, int size) {
+        if (offset < 0 || offset + size > this.tableOffset) {
+            System.err.println("Entry at offset " + offset + " is out of bounds of the FileArchive.");
+            return null;
+        }
+        MappedByteBuffer[] regions = this.getRegions();
+        if (regions == null) return null;
+        byte[] buffer = new byte[size];
+        int position = 0;
+        while (position < size) {
+            long address = offset + position;
+            ByteBuffer region = regions[(int) (address / MAP_REGION_SIZE)].duplicate();
+            region.position((int) (address % MAP_REGION_SIZE));
+            int count = Math.min(size - position, region.remaining());
+            region.get(buffer, position, count);
+            position += count;
+        }
+        return buffer;
+    }
+    
     public void preload() {
+        if (this.isMapped) {
+            for (FileEntry entry : this.entries)
+                if (entry.data == null)
+                    entry.data = this.read(entry.offset, entry.size);
+            return;
+        }
         byte[] preload = null;
         try (RandomAccessFile archive = new RandomAccessFile(this.file.getAbsolutePath(), "r")) {
             preload = new byte[(int) this.tableOffset];
@@ -280,58 +438,136 @@ public class FileArchive {
         return new SHA1(hash);
     }
     
+    /**
+     * Updates the in-memory file table after a new tail has been written to the archive,
+     * the archive gets mapped again the next time an entry is read.
+     * @param tableOffset New offset of the file table
+     * @param hashTable New file table
+     */
+    void update(long tableOffset, byte[] hashTable) {
+        this.unmap();
+        this.tableOffset = tableOffset;
+        this.hashTable = hashTable;
+        if (this.shouldVerify && !this.verify()) {
+            System.err.println("FileArchive failed verification after saving, reprocessing...");
+            this.process();
+        }
+    }
+    
+    /**
+     * Checks that the file table on disk matches the one in memory.
+     * @return Whether or not the archive matches
+     */
+    private boolean verify() {
+        try (RandomAccessFile archive = new RandomAccessFile(this.file.getAbsolutePath(), "r")) {
+            long length = archive.length();
+            archive.seek(length - 8);
+            int count = archive.readInt();
+            byte[] magic = new byte[4];
+            archive.readFully(magic);
+            
+            if (!this.archiveType.name().equals(new String(magic, StandardCharsets.UTF_8))) return false;
+            if (count != this.entries.size() || count * 0x1C != this.hashTable.length) return false;
+            
+            long footerSize = 0x8;
+            if (this.archiveType == ArchiveType.FAR4) footerSize = 0x1C;
+            else if (this.archiveType == ArchiveType.FAR5) footerSize = 0x20;
+            if (length - footerSize - (count * 0x1C) != this.tableOffset) return false;
+            
+            byte[] table = new byte[this.hashTable.length];
+            archive.seek(this.tableOffset);
+            archive.readFully(table);
+            return Arrays.equals(table, this.hashTable);
+        } catch (IOException ex) { return false; }
+    }
+    
     public byte[] build() {
+        long size = (0x1C * this.entries.size()) + 0x80;
+        for (FileEntry entry : this.entries)
+            size += entry.size;
+        if (this.saveKey != null) size += this.saveKey.length;
+        
+        ByteArrayOutputStream stream = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE - 8));
+        if (!this.build(stream)) return null;
+        return stream.toByteArray();
+    }
+    
+    /**
+     * Builds the archive to a stream in a single pass,
+     * the signature is updated as each part is written instead of
+     * hashing the entire archive at the end.
+     * @param stream Stream to write to
+     * @return Whether or not the operation was successful
+     */
+    public boolean build(OutputStream stream) {
         if (this.archiveType == ArchiveType.FARC) {
             System.out.println("FileArchive of type FARC shouldn't be built due to its size.");
-            return null;
+            return false;
         }
         
         if (this.saveKey == null) this.setFatDataSource(new SHA1());
         
-        int dataSize = this.entries
-                .stream()
-                .mapToInt(element -> element.size)
-                .reduce(0, (total, element) -> total + element);
+        Mac signature = Bytes.createSignature(FileArchive.HASHINATE_KEY);
+        if (signature == null) return false;
         
         FileEntry[] entries = new FileEntry[this.entries.size()];
         entries = this.entries.toArray(entries);
-        Arrays.sort(entries, (e1, e2) -> e1.hash.toString().compareTo(e2.hash.toString()));
-        
-        Output output = new Output(dataSize + (0x1C * this.entries.size()) + this.saveKey.length + 0x80);
-        
-        for (FileEntry entry : entries)
-            output.bytes(entry.data);
-        
-        if (output.offset % 4 != 0)
-            output.pad(4 - (output.offset % 4)); // padding for xxtea encryption
+        Arrays.sort(entries, (e1, e2) -> e1.hash.compareTo(e2.hash));
         
-        output.bytes(this.saveKey);
-        
-        int lastBufferOffset = 0;
-        for (FileEntry entry : entries) {
-            output.sha1(entry.hash);
-            output.i32(lastBufferOffset);
-            output.i32(entry.size);
-            lastBufferOffset += entry.size;
+        try {
+            long offset = 0;
+            for (FileEntry entry : entries) {
+                byte[] data = this.extract(entry);
+                if (data == null) {
+                    System.err.println("Could not extract h" + entry.hash.toString() + " while building FileArchive.");
+                    return false;
+                }
+                FileArchive.write(stream, signature, data);
+                offset += data.length;
+            }
+            
+            if (offset % 4 != 0)
+                FileArchive.write(stream, signature, new byte[(int) (4 - (offset % 4))]); // padding for xxtea encryption
+            
+            FileArchive.write(stream, signature, this.saveKey);
+            
+            Output table = new Output(0x1C * entries.length);
+            int lastBufferOffset = 0;
+            for (FileEntry entry : entries) {
+                table.sha1(entry.hash);
+                table.i32(lastBufferOffset);
+                table.i32(entry.size);
+                lastBufferOffset += entry.size;
+            }
+            FileArchive.write(stream, signature, table.buffer);
+            
+            Output footer = new Output(0x24);
+            footer.bytes(new byte[0x14]); // Leaving this hash null until we calculate it
+            if (this.archiveType == ArchiveType.FAR5)
+                footer.i32(0); // no idea what this is
+            footer.i32(entries.length);
+            footer.str(this.archiveType.name());
+            footer.shrink();
+            
+            signature.update(footer.buffer);
+            System.arraycopy(signature.doFinal(), 0, footer.buffer, 0, 0x14);
+            stream.write(footer.buffer);
+            stream.flush();
+        } catch (IOException ex) {
+            System.err.println("There was an error building the FileArchive.");
+            Logger.getLogger(FileArchive.class.getName()).log(Level.SEVERE, (String) null, ex);
+            return false;
         }
         
-        int hashinateOffset = output.offset;
-        output.bytes(new byte[0x14]); // Leaving this hash null until we calculate it
-        if (this.archiveType == ArchiveType.FAR5)
-            output.i32(0); // no idea what this is
-        
-        output.i32(entries.length);
-        output.str(this.archiveType.name());
-        
         this.queue.clear();
         this.queueSize = 0;
         
-        output.shrink();
-        
-        byte[] SHA1 = Bytes.computeSignature(output.buffer, FileArchive.HASHINATE_KEY);
-        System.arraycopy(SHA1, 0, output.buffer, hashinateOffset, 0x14);
-        
-        return output.buffer;
+        return true;
+    }
+    
+    private static void write(OutputStream stream, Mac signature, byte[] data) throws IOException {
+        signature.update(data);
+        stream.write(data);
     }
     
     public boolean save() { return this.save(null, false); }
@@ -368,7 +604,8 @@ public class FileArchive {
                 output.bytes(this.saveKey);
             }
 
-            int bufferOffset = (int) this.tableOffset;
+            int tableStart = output.offset;
+            int bufferOffset = (int) offset;
             for (int i = 0; i < this.queue.size(); ++i) {
                 FileEntry entry = this.queue.get(i);
                 output.sha1(entry.hash);
@@ -379,6 +616,7 @@ public class FileArchive {
             }
 
             output.bytes(this.hashTable);
+            int tableEnd = output.offset;
 
             if (this.archiveType != ArchiveType.FARC)
                 output.bytes(new byte[0x14]); // Hashinate, the profiles generally only need this when they call build
@@ -390,11 +628,29 @@ public class FileArchive {
             output.str(this.archiveType.toString());
             output.shrink();
 
-            RandomAccessFile fileArchive = new RandomAccessFile(this.file.getAbsolutePath(), "rw");
-            fileArchive.seek(offset);
-            fileArchive.write(output.buffer);
-            fileArchive.setLength(offset + output.buffer.length);
-            fileArchive.close();
+            this.unmap();
+            try (RandomAccessFile fileArchive = new RandomAccessFile(this.file.getAbsolutePath(), "rw")) {
+                FileArchiveJournal.begin(fileArchive, this.file, offset);
+                fileArchive.seek(offset);
+                fileArchive.write(output.buffer);
+                fileArchive.setLength(offset + output.buffer.length);
+                fileArchive.getChannel().force(true);
+                FileArchiveJournal.end(this.file);
+                
+                // Everything we need to know about the new layout is in what
+                // we just wrote, so there's no reason to parse the whole archive again.
+                bufferOffset = (int) offset;
+                for (FileEntry entry : this.queue) {
+                    entry.offset = bufferOffset;
+                    bufferOffset += entry.size;
+                    if (this.isMapped || this.archiveType == ArchiveType.FARC)
+                        entry.data = null;
+                }
+                this.update(
+                    offset + tableStart, 
+                    Arrays.copyOfRange(output.buffer, tableStart, tableEnd)
+                );
+            }
 
             shouldSave = false;
 
@@ -408,8 +664,6 @@ public class FileArchive {
                 bar.setVisible(false);
             }
 
-            process();
-
         } catch (IOException ex) {
             System.err.println("There was an error saving the FileArchive.");
             Logger.getLogger(FileArchive.class.getName()).log(Level.SEVERE, (String) null, ex);
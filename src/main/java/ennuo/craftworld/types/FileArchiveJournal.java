@@ -0,0 +1,120 @@
+package ennuo.craftworld.types;
+
+import ennuo.craftworld.serializer.Data;
+import ennuo.craftworld.serializer.Output;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Rollback journal for FileArchive saves.
+ *
+ * Saving only ever overwrites the tail of an archive (save key, file table and footer),
+ * so before anything is written, the old tail is copied to a journal next to the archive.
+ * If the journal still exists the next time the archive is opened, the save never finished,
+ * and the old tail is restored, leaving the archive exactly as it was before the save.
+ */
+class FileArchiveJournal {
+    private static final String MAGIC = "FJNL";
+
+    /**
+     * Gets the journal file of an archive.
+     * @param archive Path of the FileArchive
+     * @return Path of the journal
+     */
+    static File getFile(File archive) { return new File(archive.getAbsolutePath() + ".journal"); }
+
+    /**
+     * Copies the tail of an archive that's about to be overwritten to its journal.
+     * @param archive Open handle to the FileArchive
+     * @param file Path of the FileArchive
+     * @param offset Offset in the archive where writing starts
+     * @throws IOException If an I/O error occurs writing the journal
+     */
+    static void begin(RandomAccessFile archive, File file, long offset) throws IOException {
+        long length = archive.length();
+        byte[] tail = new byte[(int) (length - offset)];
+        archive.seek(offset);
+        archive.readFully(tail);
+
+        CRC32 crc = new CRC32();
+        crc.update(tail);
+
+        Output output = new Output(0x1C + tail.length);
+        output.str(MAGIC);
+        output.i64f(offset);
+        output.i64f(length);
+        output.i32f((int) crc.getValue());
+        output.i32f(tail.length);
+        output.bytes(tail);
+
+        File journal = FileArchiveJournal.getFile(file);
+        try (FileChannel channel = FileChannel.open(journal.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(output.buffer);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Discards the journal of an archive once a save has been flushed to disk.
+     * @param file Path of the FileArchive
+     * @throws IOException If the journal couldn't be removed
+     */
+    static void end(File file) throws IOException {
+        Files.deleteIfExists(FileArchiveJournal.getFile(file).toPath());
+    }
+
+    /**
+     * Rolls back an unfinished save if the archive has a journal.
+     * @param file Path of the FileArchive
+     * @return Whether or not an unfinished save was rolled back
+     * @throws IOException If an I/O error occurs restoring the archive
+     */
+    static boolean recover(File file) throws IOException {
+        File journal = FileArchiveJournal.getFile(file);
+        if (!journal.exists()) return false;
+
+        // If the journal is incomplete, the archive
+        // was never touched, since the journal is flushed before any writes.
+        byte[] buffer = Files.readAllBytes(journal.toPath());
+        Data data = new Data(buffer);
+        boolean isValid = buffer.length >= 0x1C && data.str(4).equals(MAGIC);
+        long offset = 0, length = 0;
+        byte[] tail = null;
+        if (isValid) {
+            offset = data.i64f();
+            length = data.i64f();
+            int checksum = data.i32f();
+            int size = data.i32f();
+            isValid = size == buffer.length - 0x1C && offset + size == length;
+            if (isValid) {
+                tail = Arrays.copyOfRange(buffer, 0x1C, buffer.length);
+                CRC32 crc = new CRC32();
+                crc.update(tail);
+                isValid = (int) crc.getValue() == checksum;
+            }
+        }
+
+        if (isValid) {
+            System.out.println("Found unfinished save for FileArchive, rolling back...");
+            try (RandomAccessFile archive = new RandomAccessFile(file.getAbsolutePath(), "rw")) {
+                archive.seek(offset);
+                archive.write(tail);
+                archive.setLength(length);
+                archive.getChannel().force(true);
+            }
+        }
+
+        Files.delete(journal.toPath());
+        return isValid;
+    }
+}
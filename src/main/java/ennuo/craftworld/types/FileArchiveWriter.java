@@ -0,0 +1,234 @@
+package ennuo.craftworld.types;
+
+import ennuo.craftworld.resources.structs.SHA1;
+import ennuo.craftworld.serializer.Data;
+import ennuo.craftworld.serializer.Output;
+import ennuo.craftworld.types.FileArchive.ArchiveType;
+import ennuo.craftworld.utilities.Bytes;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Appends entries straight to a FileArchive on disk, only the file table
+ * is kept in memory until it gets written on commit. The old tail of the
+ * archive is journaled before the first write, so an unfinished stream
+ * gets rolled back the next time the archive is opened.
+ */
+public class FileArchiveWriter implements AutoCloseable {
+    private final FileArchive archive;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    /**
+     * Offset in the archive where the next entry will be written.
+     */
+    private long position;
+
+    /**
+     * File table rows of entries written since the last commit,
+     * stored in the same layout as they are on disk.
+     */
+    private byte[] table = new byte[0x1C * 0x100];
+    private int count = 0;
+
+    /**
+     * Hashes of entries written since the last commit.
+     */
+    private HashSet<SHA1> written = new HashSet<>();
+
+    /**
+     * Whether the old tail of the archive has been journaled since the last commit.
+     */
+    private boolean isJournaled = false;
+
+    /**
+     * Whether a write failed, after which nothing else gets
+     * written and the archive is rolled back on close.
+     */
+    private boolean isFailed = false;
+
+    /**
+     * Opens a writer on a FileArchive, anything still queued
+     * in the archive gets written first.
+     * @param archive FileArchive to append to
+     * @throws IOException If the archive couldn't be opened for writing
+     */
+    public FileArchiveWriter(FileArchive archive) throws IOException {
+        if (archive.file == null)
+            throw new IllegalArgumentException("Can't stream entries to an in-memory FileArchive!");
+        this.archive = archive;
+        this.file = new RandomAccessFile(archive.file.getAbsolutePath(), "rw");
+        this.channel = this.file.getChannel();
+        this.rewind();
+        if (archive.queue.isEmpty()) return;
+
+        HashSet<FileEntry> queued = new HashSet<>(archive.queue);
+        archive.entries.removeAll(queued);
+        for (FileEntry entry : queued)
+            archive.lookup.remove(entry.hash);
+        try {
+            for (FileEntry entry : archive.queue)
+                this.add(entry.data);
+        } catch (IOException | RuntimeException ex) {
+            // Leave the queue as it was, the partial writes get rolled back on close.
+            this.isFailed = true;
+            archive.entries.addAll(queued);
+            for (FileEntry entry : queued)
+                archive.lookup.put(entry.hash, entry);
+            this.close();
+            throw ex;
+        }
+        archive.queue.clear();
+        archive.queueSize = 0;
+    }
+
+    /**
+     * Sets the write position to the start of the archive's current tail.
+     */
+    private void rewind() {
+        this.position = this.archive.tableOffset;
+        if (this.archive.archiveType != ArchiveType.FARC) {
+            if (this.archive.saveKey == null) this.archive.setFatDataSource(new SHA1());
+            this.position -= this.archive.saveKey.length;
+        }
+    }
+
+    /**
+     * Writes an entry to the archive, unless it already exists.
+     * @param data Data of the entry
+     * @return Whether or not the entry was written
+     * @throws IOException If an I/O error occurs writing the entry
+     */
+    public boolean add(byte[] data) throws IOException {
+        if (this.isFailed) throw new IOException("A previous write to the FileArchive failed!");
+        if (data == null) return false;
+        SHA1 hash = SHA1.fromBuffer(data);
+        if (this.archive.find(hash) != null || this.written.contains(hash))
+            return false;
+
+        long offset = this.position;
+        try {
+            if (!this.isJournaled) {
+                this.archive.unmap();
+                FileArchiveJournal.begin(this.file, this.archive.file, this.position);
+                this.isJournaled = true;
+            }
+            this.write(ByteBuffer.wrap(data));
+        } catch (IOException | RuntimeException ex) {
+            this.isFailed = true;
+            throw ex;
+        }
+
+        // The row only gets added once the data is on disk, so a
+        // failed write never ends up in the file table.
+        this.written.add(hash);
+        if ((this.count + 1) * 0x1C > this.table.length)
+            this.table = Arrays.copyOf(this.table, this.table.length * 2);
+        int row = this.count * 0x1C;
+        System.arraycopy(hash.getHash(), 0, this.table, row, 0x14);
+        ByteBuffer.wrap(this.table)
+            .putInt(row + 0x14, (int) offset)
+            .putInt(row + 0x18, data.length);
+        this.count++;
+        return true;
+    }
+
+    /**
+     * Writes the file table and footer, making every entry
+     * written so far part of the archive.
+     * @throws IOException If an I/O error occurs writing the table
+     */
+    public void commit() throws IOException {
+        if (this.isFailed) throw new IOException("A previous write to the FileArchive failed!");
+        try { this.writeTable(); }
+        catch (IOException | RuntimeException ex) {
+            this.isFailed = true;
+            throw ex;
+        }
+    }
+
+    private void writeTable() throws IOException {
+        this.archive.unmap();
+        ArchiveType type = this.archive.archiveType;
+        byte[] saveKey = this.archive.saveKey;
+        byte[] hashTable = this.archive.hashTable;
+
+        int tailSize = 0x4 + (this.count * 0x1C) + hashTable.length + 0x20;
+        if (type != ArchiveType.FARC) tailSize += saveKey.length;
+        Output output = new Output(tailSize);
+
+        if (type != ArchiveType.FARC) {
+            if (this.position % 4 != 0)
+                output.pad(4 - ((int) (this.position % 4))); // padding for xxtea encryption
+            output.bytes(saveKey);
+        }
+
+        long tableOffset = this.position + output.offset;
+        byte[] rows = Arrays.copyOf(this.table, this.count * 0x1C);
+        output.bytes(rows);
+        output.bytes(hashTable);
+
+        if (type != ArchiveType.FARC)
+            output.bytes(new byte[0x14]); // Hashinate, the profiles generally only need this when they call build
+        if (type == ArchiveType.FAR5)
+            output.i32(8); // unsure what this is
+
+        output.i32((hashTable.length / 0x1C) + this.count);
+        output.str(type.toString());
+        output.shrink();
+
+        this.write(ByteBuffer.wrap(output.buffer));
+        this.file.setLength(this.position);
+        this.channel.force(true);
+        FileArchiveJournal.end(this.archive.file);
+        this.isJournaled = false;
+
+        System.out.println("Successfully streamed " + this.count + " entries to the FileArchive.");
+
+        Data table = new Data(rows);
+        for (int i = 0; i < this.count; ++i) {
+            FileEntry entry = new FileEntry(table.sha1(), table.u32f(), table.i32f(), null);
+            this.archive.entries.add(entry);
+            this.archive.lookup.put(entry.hash, entry);
+        }
+        this.archive.update(tableOffset, Bytes.Combine(rows, hashTable));
+
+        this.count = 0;
+        this.written.clear();
+        this.rewind();
+    }
+
+    /**
+     * Writes a buffer at the current position, advancing it.
+     * @param buffer Buffer to write
+     * @throws IOException If an I/O error occurs writing the buffer
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            this.position += this.channel.write(buffer, this.position);
+    }
+
+    /**
+     * Commits any pending entries and closes the archive, if a write failed
+     * the archive is rolled back to its last commit instead.
+     * @throws IOException If an I/O error occurs committing the entries
+     */
+    @Override
+    public void close() throws IOException {
+        try { if (!this.isFailed && this.count != 0) this.commit(); }
+        finally {
+            this.file.close();
+            if (this.isFailed && this.isJournaled) {
+                // If this fails too, the journal is left for the next time the archive is opened.
+                try { FileArchiveJournal.recover(this.archive.file); }
+                catch (IOException ex) {
+                    System.err.println("Failed to roll back the FileArchive, it will be recovered the next time it's opened.");
+                }
+            }
+        }
+    }
+}
@@ -9,7 +9,7 @@ import ennuo.craftworld.swing.FileModel;
 import ennuo.craftworld.swing.FileNode;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.stream.IntStream;
 import javax.swing.JProgressBar;
 
 public class FileDB extends FileData {
@@ -20,8 +20,10 @@ public class FileDB extends FileData {
   
     public ArrayList<FileEntry> entries = new ArrayList<FileEntry>();
   
-    public HashMap<SHA1, FileEntry> SHA1Lookup = new HashMap<>();
-    public HashMap<Long, FileEntry> GUIDLookup = new HashMap<>();
+    /**
+     * Lookup tables of entries by GUID and SHA1.
+     */
+    public FileDBIndex index = new FileDBIndex();
     
     /**
      * Creates a FileDB from file and generates nodes
@@ -109,35 +111,45 @@ public class FileDB extends FileData {
         System.out.println("Entry Count: " + count);
 
         this.entries = new ArrayList<FileEntry>(count);
-        this.SHA1Lookup = new HashMap<SHA1, FileEntry>(count);
-        this.GUIDLookup = new HashMap<Long, FileEntry>(count);
+        this.index = new FileDBIndex(count);
 
         if (bar != null) {
             this.model = new FileModel(new FileNode("FILEDB", null, null));
             this.root = (FileNode) this.model.getRoot();
         }
 
+        // Records only differ in the length of their path, so one quick
+        // pass to find where each of them starts is enough to decode them in parallel.
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; ++i) {
+            offsets[i] = data.offset;
+            data.forward((this.isLBP3 ? data.i16() : data.i32()) + (this.isLBP3 ? 0x20 : 0x24));
+        }
+        
+        FileEntry[] records = new FileEntry[count];
+        int chunkSize = Math.max(0x400, count / (Runtime.getRuntime().availableProcessors() * 4) + 1);
+        IntStream.range(0, (count + chunkSize - 1) / chunkSize).parallel().forEach(chunk -> {
+            Data view = new Data(data.data);
+            int last = Math.min(count, (chunk + 1) * chunkSize);
+            for (int i = chunk * chunkSize; i < last; ++i) {
+                view.seek(offsets[i]);
+                records[i] = this.readEntry(view);
+            }
+        });
+        
+        // Only update the progress bar once for every percent of entries.
+        int step = Math.max(1, count / 100);
         for (int i = 0; i < count; i++) {
-            if (bar != null) bar.setValue(i);
-                        
-            String path = data.str(this.isLBP3 ? data.i16() : data.i32());
-            if (!this.isLBP3) data.forward(4); 
-            int timestamp = data.i32();
-            int size = data.i32();
-            SHA1 hash = data.sha1();
-            long GUID = data.u32();
+            if (bar != null && i % step == 0) bar.setValue(i);
             
-            if (path.startsWith(".")) 
-                path = "data/" + FileDB.getFolderFromExtension(path) + hash.toString().toLowerCase() + path;
-            if (GUID > lastGUID && GUID < 0x00180000)
-                this.lastGUID = GUID;
+            FileEntry entry = records[i];
+            if (entry.GUID > lastGUID && entry.GUID < 0x00180000)
+                this.lastGUID = entry.GUID;
             
-            FileEntry entry = new FileEntry(path, timestamp, size, hash, GUID);
-            this.GUIDLookup.put(GUID, entry);
-            this.SHA1Lookup.put(hash, entry);
+            this.index.put(entry);
             this.entries.add(entry);
             
-            if (bar != null && !FileDB.isHidden(path))
+            if (bar != null && !FileDB.isHidden(entry.path))
                 this.addNode(entry);
         }
         
@@ -157,40 +169,45 @@ public class FileDB extends FileData {
         this.isParsed = true;
     }
   
+    /**
+     * Reads a single entry record from data instance.
+     * @param data FileDB data source, positioned at the start of the record
+     * @return Entry read from the FileDB
+     */
+    private FileEntry readEntry(Data data) {
+        String path = data.str(this.isLBP3 ? data.i16() : data.i32());
+        if (!this.isLBP3) data.forward(4); 
+        int timestamp = data.i32();
+        int size = data.i32();
+        SHA1 hash = data.sha1();
+        long GUID = data.u32();
+        
+        if (path.startsWith(".")) 
+            path = "data/" + FileDB.getFolderFromExtension(path) + hash.toString().toLowerCase() + path;
+        
+        return new FileEntry(path, timestamp, size, hash, GUID);
+    }
+  
     /**
      * Finds FileEntry via GUID.
      * @param GUID GUID to find in FileDB
      * @return Entry found in FileDB
      */
-    public FileEntry find(long GUID) {
-        if (this.GUIDLookup.containsKey(GUID))
-            return this.GUIDLookup.get(GUID);
-        return null;
-    }
+    public FileEntry find(long GUID) { return this.index.find(GUID); }
     
     /**
      * Finds FileEntry via SHA1.
      * @param SHA1 SHA1 to find in the FileDB
      * @return Entry found in FileDB
      */
-    public FileEntry find(SHA1 hash) {
-        if (this.SHA1Lookup.containsKey(hash))
-            return this.SHA1Lookup.get(hash);
-        return null;
-    }
+    public FileEntry find(SHA1 hash) { return this.index.find(hash); }
     
     /**
      * Finds all entries in the FileDB that have specified SHA1.
      * @param hash SHA1 to find in the FileDB
      * @return Array of FileEntrys that match SHA1
      */
-    public FileEntry[] findAll(SHA1 hash) {
-        ArrayList<FileEntry> results = new ArrayList<FileEntry>(this.entries.size());
-        for (FileEntry entry : this.entries)
-            if (entry.hash.equals(hash))
-                results.add(entry);
-        return (FileEntry[]) results.toArray(new FileEntry[results.size()]);
-    }
+    public FileEntry[] findAll(SHA1 hash) { return this.index.findAll(hash); }
   
     /**
      * Gets the next available GUID in the FileDB.
@@ -210,12 +227,13 @@ public class FileDB extends FileData {
         if (existing == null) {
             entry.updateTimestamp();
             this.entries.add(entry);
-            this.SHA1Lookup.put(entry.hash, entry);
-            this.GUIDLookup.put(entry.GUID, entry);
+            this.index.put(entry);
             return true;
         }
         
+        this.index.remove(existing);
         existing.setData(entry);
+        this.index.put(existing);
         
         return false;
     }
@@ -235,8 +253,7 @@ public class FileDB extends FileData {
     public boolean remove(FileEntry entry) {
         if (entry == null) return false;
         this.entries.remove(entry);
-        this.GUIDLookup.remove(entry.GUID);
-        this.SHA1Lookup.remove(entry.hash);
+        this.index.remove(entry);
         this.shouldSave = true;
         return true;
     }
@@ -266,9 +283,10 @@ public class FileDB extends FileData {
     public boolean edit(FileEntry entry, long GUID) {
         FileEntry lookup = this.find(entry.GUID);
         if (lookup != null) {
-            this.GUIDLookup.remove(entry.GUID);
+            this.index.remove(entry);
             entry.GUID = GUID;
-            this.GUIDLookup.put(GUID, entry);
+            this.index.put(entry);
+            this.invalidateSearch();
             this.shouldSave = true;
             return true;
         }
@@ -284,7 +302,29 @@ public class FileDB extends FileData {
     public boolean edit(FileEntry entry, byte[] buffer) {
         FileEntry lookup = this.find(entry.GUID);
         if (lookup != null) {
+            this.index.remove(lookup);
             entry.setData(buffer);
+            this.index.put(lookup);
+            this.invalidateSearch();
+            this.shouldSave = true;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Edits the SHA1 of the FileEntry.
+     * @param entry Entry to edit
+     * @param hash SHA1 to set
+     * @return Whether or not the operation was successful.
+     */
+    public boolean edit(FileEntry entry, SHA1 hash) {
+        FileEntry lookup = this.find(entry.GUID);
+        if (lookup != null) {
+            this.index.remove(lookup);
+            entry.hash = hash;
+            this.index.put(lookup);
+            this.invalidateSearch();
             this.shouldSave = true;
             return true;
         }
@@ -300,7 +340,9 @@ public class FileDB extends FileData {
     public boolean replace(FileEntry entry, long GUID) {
         FileEntry lookup = this.find(GUID);
         if (lookup == null) return false;
+        this.index.remove(lookup);
         lookup.setData(entry);
+        this.index.put(lookup);
         this.shouldSave = true;
         return true;
     }
@@ -313,7 +355,10 @@ public class FileDB extends FileData {
     public boolean zero(FileEntry entry) {
         FileEntry lookup = this.find(entry.GUID);
         if (lookup != null) {
+            this.index.remove(lookup);
             entry.setData((byte[]) null);
+            this.index.put(lookup);
+            this.invalidateSearch();
             this.shouldSave = true;
             return true;
         }
@@ -372,7 +417,7 @@ public class FileDB extends FileData {
     public boolean save(String path) {
         byte[] database = this.build();
         if (database == null) return false;
-        if (FileIO.write(database, path)) {
+        if (FileIO.writeAtomic(database, path)) {
             if (path.equals(this.path))
                 this.shouldSave = false;
             return true;
@@ -0,0 +1,306 @@
+package ennuo.craftworld.types;
+
+import ennuo.craftworld.resources.structs.SHA1;
+import java.util.Arrays;
+
+/**
+ * Lookup tables for FileDB entries by GUID and SHA1.
+ *
+ * Both tables use open addressing with linear probing, so an entry
+ * only costs a couple of array slots instead of boxed keys and map nodes.
+ * The hash table has one slot per distinct SHA1, holding either the entry
+ * itself or an array of every entry sharing that SHA1, so duplicates
+ * never lengthen the probe sequence of other keys.
+ */
+public class FileDBIndex {
+    private long[] GUIDs;
+    private FileEntry[] GUIDEntries;
+    private int GUIDCount = 0;
+
+    private SHA1[] hashes;
+
+    /**
+     * Either a FileEntry or a FileEntry[] of every entry with the SHA1 in the same slot.
+     */
+    private Object[] hashEntries;
+    private int hashCount = 0;
+
+    /**
+     * Creates an empty index.
+     */
+    public FileDBIndex() { this(0x10); }
+
+    /**
+     * Creates an empty index sized for a number of entries.
+     * @param count Expected number of entries
+     */
+    public FileDBIndex(int count) {
+        int capacity = FileDBIndex.getCapacity(count);
+        this.GUIDs = new long[capacity];
+        this.GUIDEntries = new FileEntry[capacity];
+        this.hashes = new SHA1[capacity];
+        this.hashEntries = new Object[capacity];
+    }
+
+    /**
+     * Gets the smallest power of two table that keeps the load under a half.
+     * @param count Number of entries
+     * @return Capacity of the table
+     */
+    private static int getCapacity(int count) {
+        int capacity = 0x10;
+        while (capacity < count * 2)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    private static int getSlot(long GUID, int mask) {
+        long mix = GUID * 0x9E3779B97F4A7C15L;
+        return (int) (mix ^ (mix >>> 32)) & mask;
+    }
+
+    private static int getSlot(SHA1 hash, int mask) { return hash.hashCode() & mask; }
+
+    /**
+     * Adds an entry to the index, replacing any entry with the same GUID.
+     * @param entry Entry to add
+     */
+    public void put(FileEntry entry) {
+        this.putGUID(entry.GUID, entry);
+        if (entry.hash != null)
+            this.putHash(entry.hash, entry);
+    }
+
+    /**
+     * Removes an entry from the index.
+     * @param entry Entry to remove
+     */
+    public void remove(FileEntry entry) {
+        this.removeGUID(entry.GUID, entry);
+        this.removeHash(entry.hash, entry);
+    }
+
+    /**
+     * Finds an entry by GUID.
+     * @param GUID GUID of the entry
+     * @return Entry with GUID, or null if it doesn't exist
+     */
+    public FileEntry find(long GUID) {
+        int mask = this.GUIDs.length - 1;
+        for (int slot = getSlot(GUID, mask); this.GUIDEntries[slot] != null; slot = (slot + 1) & mask)
+            if (this.GUIDs[slot] == GUID)
+                return this.GUIDEntries[slot];
+        return null;
+    }
+
+    /**
+     * Gets the slot of a SHA1 in the hash table.
+     * @param hash SHA1 to find
+     * @return Slot of the SHA1, or -1 if it isn't in the table
+     */
+    private int findHash(SHA1 hash) {
+        int mask = this.hashes.length - 1;
+        for (int slot = getSlot(hash, mask); this.hashEntries[slot] != null; slot = (slot + 1) & mask)
+            if (this.hashes[slot].equals(hash))
+                return slot;
+        return -1;
+    }
+
+    /**
+     * Finds the first entry with a SHA1.
+     * @param hash SHA1 of the entry
+     * @return Entry with SHA1, or null if it doesn't exist
+     */
+    public FileEntry find(SHA1 hash) {
+        if (hash == null) return null;
+        int slot = this.findHash(hash);
+        if (slot == -1) return null;
+        Object value = this.hashEntries[slot];
+        if (value instanceof FileEntry) return (FileEntry) value;
+        return ((FileEntry[]) value)[0];
+    }
+
+    /**
+     * Finds every entry with a SHA1.
+     * @param hash SHA1 of the entries
+     * @return Entries with SHA1
+     */
+    public FileEntry[] findAll(SHA1 hash) {
+        if (hash == null) return new FileEntry[0];
+        int slot = this.findHash(hash);
+        if (slot == -1) return new FileEntry[0];
+        Object value = this.hashEntries[slot];
+        if (value instanceof FileEntry) return new FileEntry[] { (FileEntry) value };
+        return ((FileEntry[]) value).clone();
+    }
+
+    private void putGUID(long GUID, FileEntry entry) {
+        if ((this.GUIDCount + 1) * 2 > this.GUIDs.length)
+            this.resizeGUIDs(this.GUIDs.length * 2);
+        int mask = this.GUIDs.length - 1;
+        int slot = getSlot(GUID, mask);
+        while (this.GUIDEntries[slot] != null) {
+            if (this.GUIDs[slot] == GUID) {
+                this.GUIDEntries[slot] = entry;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.GUIDs[slot] = GUID;
+        this.GUIDEntries[slot] = entry;
+        this.GUIDCount++;
+    }
+
+    private void putHash(SHA1 hash, FileEntry entry) {
+        int slot = this.findHash(hash);
+        if (slot != -1) {
+            Object value = this.hashEntries[slot];
+            if (value == entry) return;
+            if (value instanceof FileEntry) {
+                this.hashEntries[slot] = new FileEntry[] { (FileEntry) value, entry };
+                return;
+            }
+            FileEntry[] entries = (FileEntry[]) value;
+            for (FileEntry existing : entries)
+                if (existing == entry) return;
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = entry;
+            this.hashEntries[slot] = entries;
+            return;
+        }
+
+        this.insertHash(hash, entry);
+    }
+
+    /**
+     * Inserts a SHA1 that isn't in the hash table yet.
+     * @param hash SHA1 to insert
+     * @param value Entry or entries with the SHA1
+     */
+    private void insertHash(SHA1 hash, Object value) {
+        if ((this.hashCount + 1) * 2 > this.hashes.length)
+            this.resizeHashes(this.hashes.length * 2);
+        int mask = this.hashes.length - 1;
+        int slot = getSlot(hash, mask);
+        while (this.hashEntries[slot] != null)
+            slot = (slot + 1) & mask;
+        this.hashes[slot] = hash;
+        this.hashEntries[slot] = value;
+        this.hashCount++;
+    }
+
+    private void removeGUID(long GUID, FileEntry entry) {
+        int mask = this.GUIDs.length - 1;
+        for (int slot = getSlot(GUID, mask); this.GUIDEntries[slot] != null; slot = (slot + 1) & mask) {
+            if (this.GUIDs[slot] == GUID) {
+                if (this.GUIDEntries[slot] == entry)
+                    this.deleteGUID(slot);
+                return;
+            }
+        }
+    }
+
+    private void removeHash(SHA1 hash, FileEntry entry) {
+        if (hash != null) {
+            int slot = this.findHash(hash);
+            if (slot != -1 && this.removeHashEntry(slot, entry)) return;
+        }
+
+        // The hash of the entry was changed without going through
+        // the database, so we have to look for where it used to be.
+        for (int slot = 0; slot < this.hashEntries.length; ++slot)
+            if (this.hashEntries[slot] != null && this.removeHashEntry(slot, entry))
+                return;
+    }
+
+    /**
+     * Removes an entry from a slot in the hash table, emptying the slot if it was the last one.
+     * @param slot Slot to remove from
+     * @param entry Entry to remove
+     * @return Whether or not the entry was in the slot
+     */
+    private boolean removeHashEntry(int slot, FileEntry entry) {
+        Object value = this.hashEntries[slot];
+        if (value == entry) {
+            this.deleteHash(slot);
+            return true;
+        }
+        if (value instanceof FileEntry) return false;
+
+        FileEntry[] entries = (FileEntry[]) value;
+        for (int i = 0; i < entries.length; ++i) {
+            if (entries[i] != entry) continue;
+            if (entries.length == 2) this.hashEntries[slot] = entries[1 - i];
+            else {
+                FileEntry[] remaining = new FileEntry[entries.length - 1];
+                System.arraycopy(entries, 0, remaining, 0, i);
+                System.arraycopy(entries, i + 1, remaining, i, entries.length - i - 1);
+                this.hashEntries[slot] = remaining;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Empties a slot in the GUID table, shifting back any
+     * entries that would no longer be reachable.
+     * @param hole Slot to empty
+     */
+    private void deleteGUID(int hole) {
+        int mask = this.GUIDs.length - 1;
+        for (int slot = (hole + 1) & mask; this.GUIDEntries[slot] != null; slot = (slot + 1) & mask) {
+            int ideal = getSlot(this.GUIDs[slot], mask);
+            if (((slot - ideal) & mask) >= ((slot - hole) & mask)) {
+                this.GUIDs[hole] = this.GUIDs[slot];
+                this.GUIDEntries[hole] = this.GUIDEntries[slot];
+                hole = slot;
+            }
+        }
+        this.GUIDs[hole] = 0;
+        this.GUIDEntries[hole] = null;
+        this.GUIDCount--;
+    }
+
+    /**
+     * Empties a slot in the hash table, shifting back any
+     * entries that would no longer be reachable.
+     * @param hole Slot to empty
+     */
+    private void deleteHash(int hole) {
+        int mask = this.hashes.length - 1;
+        for (int slot = (hole + 1) & mask; this.hashEntries[slot] != null; slot = (slot + 1) & mask) {
+            int ideal = getSlot(this.hashes[slot], mask);
+            if (((slot - ideal) & mask) >= ((slot - hole) & mask)) {
+                this.hashes[hole] = this.hashes[slot];
+                this.hashEntries[hole] = this.hashEntries[slot];
+                hole = slot;
+            }
+        }
+        this.hashes[hole] = null;
+        this.hashEntries[hole] = null;
+        this.hashCount--;
+    }
+
+    private void resizeGUIDs(int capacity) {
+        long[] GUIDs = this.GUIDs;
+        FileEntry[] entries = this.GUIDEntries;
+        this.GUIDs = new long[capacity];
+        this.GUIDEntries = new FileEntry[capacity];
+        this.GUIDCount = 0;
+        for (int i = 0; i < entries.length; ++i)
+            if (entries[i] != null)
+                this.putGUID(GUIDs[i], entries[i]);
+    }
+
+    private void resizeHashes(int capacity) {
+        SHA1[] hashes = this.hashes;
+        Object[] entries = this.hashEntries;
+        this.hashes = new SHA1[capacity];
+        this.hashEntries = new Object[capacity];
+        this.hashCount = 0;
+        for (int i = 0; i < entries.length; ++i)
+            if (entries[i] != null)
+                this.insertHash(hashes[i], entries[i]);
+    }
+}
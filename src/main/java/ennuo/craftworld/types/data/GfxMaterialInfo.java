@@ -31,10 +31,10 @@ public class GfxMaterialInfo {
             Texture texture = new Texture(data);
             if (scale.x > 1 && scale.y > 1) {
                 BufferedImage scaled = 
-                        Images.getTiledImage(texture.cached, (int) Math.round(this.scale.x), (int) Math.round(this.scale.y));
+                        Images.getTiledImage(texture.getImage(), (int) Math.round(this.scale.x), (int) Math.round(this.scale.y));
                 return scaled;
             }
-            return texture.cached;
+            return texture.getImage();
         }
         
         public byte[] getTexture() { return this.getTexture(null); }
@@ -42,10 +42,10 @@ public class GfxMaterialInfo {
             byte[] data = Globals.extractFile(this.texture);
             if (data == null) return null;
             Texture texture = new Texture(data);
-            if (!texture.parsed || texture.cached == null) return null;
+            if (!texture.parsed || texture.getImage() == null) return null;
             if (scale.x > 1 && scale.y > 1) {
                 BufferedImage scaled = 
-                        Images.getTiledImage(texture.cached, (int) Math.round(this.scale.x), (int) Math.round(this.scale.y));
+                        Images.getTiledImage(texture.getImage(), (int) Math.round(this.scale.x), (int) Math.round(this.scale.y));
                 if (dirt != null)
                     scaled = Images.multiply(dirt, scaled);
                 return Images.toTEX(scaled);
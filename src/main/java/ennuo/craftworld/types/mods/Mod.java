@@ -19,11 +19,13 @@ import ennuo.craftworld.types.FileEntry;
 import ennuo.toolkit.utilities.Globals;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -203,6 +205,7 @@ public class Mod extends FileData {
         if (entry == null) return false;
         entry.setData(buffer);
         this.SHA1Lookup.put(SHA1.fromBuffer(buffer), buffer);
+        this.invalidateSearch();
         this.shouldSave = true;
         return true;
     }
@@ -225,7 +228,6 @@ public class Mod extends FileData {
                 archive.entries.add(entry);
         
         byte[] serializedDatabase = database.build();
-        byte[] serializedArchive = archive.build();
         
         byte[] image = null;
         if (this.icon != null) {
@@ -268,7 +270,9 @@ public class Mod extends FileData {
             if (patches != null)
                 Files.write(filesystem.getPath("patches.json"), patches);
             Files.write(filesystem.getPath("data.map"), serializedDatabase);
-            Files.write(filesystem.getPath("data.farc"), serializedArchive);
+            try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(filesystem.getPath("data.farc")))) {
+                if (!archive.build(stream)) throw new IOException("Failed to build FileArchive!");
+            }
         } catch (IOException ex) {
             Logger.getLogger(Mod.class.getName()).log(Level.SEVERE, null, ex);
         }
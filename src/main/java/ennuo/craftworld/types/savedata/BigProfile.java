@@ -96,7 +96,7 @@ public class BigProfile implements Serializable {
     }
     
     public byte[] build(Revision revision, byte compressionFlags) {
-        Serializer serializer = new Serializer(1000 * 1024, revision, compressionFlags);
+        Serializer serializer = new Serializer(0x10000, revision, compressionFlags);
         serializer.struct(this, BigProfile.class);
         return Resource.compressToResource(serializer.output, ResourceType.BIG_PROFILE);
     }
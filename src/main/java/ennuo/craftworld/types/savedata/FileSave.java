@@ -4,7 +4,6 @@ import ennuo.craftworld.ex.SerializationException;
 import ennuo.craftworld.utilities.Bytes;
 import ennuo.craftworld.resources.Resource;
 import ennuo.craftworld.resources.enums.InventoryObjectType;
-import ennuo.craftworld.resources.io.FileIO;
 import ennuo.craftworld.resources.structs.InventoryItem;
 import ennuo.craftworld.resources.structs.Revision;
 import ennuo.craftworld.resources.structs.SHA1;
@@ -18,7 +17,13 @@ import ennuo.craftworld.types.FileArchive;
 import ennuo.craftworld.types.FileArchive.ArchiveType;
 import ennuo.craftworld.types.FileEntry;
 import ennuo.toolkit.utilities.Globals;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.regex.Pattern;
@@ -306,8 +311,13 @@ public class FileSave extends FileData {
         archive.setFatRevision(revision);
         archive.setFatDataSource(SHA1.fromBuffer(profile));
         
-        byte[] output = archive.build();
-        FileIO.write(output, "C:/Users/Aidan/Desktop/bigfart");
+        Path output = Paths.get("C:/Users/Aidan/Desktop/bigfart");
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(output))) {
+            if (!archive.build(stream))
+                System.err.println("Failed to build FileArchive!");
+        } catch (IOException ex) {
+            System.err.println("There was an error writing the FileArchive to " + output.toString());
+        }
         
         return null;
     }
@@ -0,0 +1,136 @@
+package ennuo.craftworld.utilities;
+
+import ennuo.craftworld.serializer.Data;
+import ennuo.craftworld.serializer.Output;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Replaces any number of byte patterns in a single pass over a buffer.
+ *
+ * The patterns are compiled into an Aho-Corasick automaton, so the cost of a scan
+ * doesn't depend on how many patterns there are. The buffer is scanned left to right,
+ * and a pattern is replaced as soon as it's found, preferring the longest pattern
+ * that ends at that position. Replaced bytes are never scanned again.
+ */
+public final class ByteReplacer {
+    private final ArrayList<byte[]> originals = new ArrayList<>();
+    private final ArrayList<byte[]> replacements = new ArrayList<>();
+
+    /**
+     * Transition table of the automaton, 256 entries per state,
+     * and the pattern that ends at each state, or -1.
+     */
+    private int[] transitions;
+    private int[] matches;
+
+    /**
+     * Adds a pattern to replace, patterns that are empty
+     * or already added are ignored.
+     * @param original Pattern to search for
+     * @param replacement Bytes to replace the pattern with
+     * @return This replacer
+     */
+    public ByteReplacer add(byte[] original, byte[] replacement) {
+        if (original == null || original.length == 0 || replacement == null) return this;
+        for (byte[] pattern : this.originals)
+            if (Arrays.equals(pattern, original)) return this;
+        this.originals.add(original);
+        this.replacements.add(replacement);
+        this.transitions = null;
+        return this;
+    }
+
+    public boolean isEmpty() { return this.originals.isEmpty(); }
+
+    private void compile() {
+        int capacity = 1;
+        for (byte[] pattern : this.originals)
+            capacity += pattern.length;
+
+        int[] transitions = new int[capacity << 8];
+        int[] matches = new int[capacity];
+        int[] failure = new int[capacity];
+        Arrays.fill(matches, -1);
+
+        // Build the trie, using 0 as "no edge", which is safe since nothing points back to the root yet.
+        int states = 1;
+        for (int i = 0; i < this.originals.size(); ++i) {
+            int state = 0;
+            for (byte b : this.originals.get(i)) {
+                int edge = (state << 8) | (b & 0xFF);
+                if (transitions[edge] == 0)
+                    transitions[edge] = states++;
+                state = transitions[edge];
+            }
+            matches[state] = i;
+        }
+
+        // Fill in the missing edges breadth first, so every state's failure link is complete before its children.
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int c = 0; c < 0x100; ++c) {
+            int child = transitions[c];
+            if (child != 0) queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            if (matches[state] == -1) matches[state] = matches[failure[state]];
+            for (int c = 0; c < 0x100; ++c) {
+                int edge = (state << 8) | c;
+                int child = transitions[edge];
+                int fallback = transitions[(failure[state] << 8) | c];
+                if (child == 0) transitions[edge] = fallback;
+                else {
+                    failure[child] = fallback;
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        this.transitions = transitions;
+        this.matches = matches;
+    }
+
+    /**
+     * Replaces every pattern in a buffer.
+     * @param data Buffer to search
+     * @return Buffer with the patterns replaced, or the same buffer if nothing was found
+     */
+    public byte[] replace(byte[] data) {
+        if (data == null || this.originals.isEmpty()) return data;
+        if (this.transitions == null) this.compile();
+
+        int[] transitions = this.transitions;
+        int[] matches = this.matches;
+        Output output = null;
+        int state = 0, last = 0;
+        for (int i = 0; i < data.length; ++i) {
+            state = transitions[(state << 8) | (data[i] & 0xFF)];
+            int match = matches[state];
+            if (match == -1) continue;
+
+            if (output == null) output = new Output(data.length + 0x100);
+            int start = i - this.originals.get(match).length + 1;
+            output.bytes(data, last, start - last);
+            output.bytes(this.replacements.get(match));
+            last = i + 1;
+            state = 0;
+        }
+
+        if (output == null) return data;
+        output.bytes(data, last, data.length - last);
+        output.shrink();
+        return output.buffer;
+    }
+
+    /**
+     * Replaces every pattern in a stream's buffer, seeking it back to the start.
+     * @param data Stream to search
+     */
+    public void replace(Data data) {
+        byte[] buffer = this.replace(data.data);
+        if (buffer != data.data) data.setData(buffer);
+        data.seek(0);
+    }
+}
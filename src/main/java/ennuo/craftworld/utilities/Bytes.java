@@ -6,6 +6,7 @@ import ennuo.craftworld.resources.GfxMaterial;
 import ennuo.craftworld.resources.Plan;
 import ennuo.craftworld.serializer.Output;
 import ennuo.craftworld.resources.Resource;
+import ennuo.craftworld.resources.ResourceHeader;
 import ennuo.craftworld.types.data.ResourceDescriptor;
 import ennuo.craftworld.types.FileEntry;
 import ennuo.craftworld.resources.enums.ResourceType;
@@ -16,6 +17,7 @@ import ennuo.craftworld.serializer.Data;
 import ennuo.craftworld.types.data.GfxMaterialInfo;
 import ennuo.craftworld.types.mods.Mod;
 import ennuo.toolkit.utilities.Globals;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
@@ -190,19 +192,32 @@ public class Bytes {
         return result;
     }
 
-    public static byte[] SHA1(byte[] bytes) {
-        MessageDigest digest = null;
-        try {
-            digest = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException ex) {
+    /**
+     * SHA-1 digests are expensive to look up, so each thread keeps its own.
+     */
+    private static final ThreadLocal<MessageDigest> SHA1_DIGESTS = ThreadLocal.withInitial(() -> {
+        try { return MessageDigest.getInstance("SHA-1"); } 
+        catch (NoSuchAlgorithmException ex) {
             Logger.getLogger(Bytes.class.getName()).log(Level.SEVERE, (String) null, ex);
             return null;
         }
+    });
+
+    public static byte[] SHA1(byte[] bytes) {
+        MessageDigest digest = SHA1_DIGESTS.get();
+        if (digest == null) return null;
         return digest.digest(bytes);
     }
 
+    public static byte[] SHA1(ByteBuffer buffer) {
+        MessageDigest digest = SHA1_DIGESTS.get();
+        if (digest == null) return null;
+        digest.update(buffer.duplicate());
+        return digest.digest();
+    }
+
     public static byte[][] Split(byte[] data, int size) {
-        byte[][] out = new byte[(int) Math.ceil(data.length / (double) size)][size];
+        byte[][] out = new byte[(int) Math.ceil(data.length / (double) size)][];
         int start = 0;
         for (int i = 0; i < out.length; ++i) {
             int end = Math.min(data.length, start + size);
@@ -298,27 +313,7 @@ public class Bytes {
 
     public static void ReplaceAll(Data data, byte[] original, byte[] replacement) {
         if (Arrays.equals(original, replacement)) return;
-
-        data.seek(0);
-
-        int offset = KMPMatchUtilities.indexOf(data.data, original);
-        int found = 0;
-        while (offset != -1) {
-            found++;
-
-            byte[] left = data.bytes(offset);
-            data.offset += original.length;
-            byte[] right = data.bytes(data.length - data.offset);
-
-            data.setData(Bytes.Combine(
-                left,
-                replacement,
-                right
-
-            ));
-
-            offset = KMPMatchUtilities.indexOf(data.data, original);
-        }
+        new ByteReplacer().add(original, replacement).replace(data);
     }
 
     /*
@@ -372,7 +367,7 @@ public class Bytes {
             if (res == null || res.type == ResourceType.SCRIPT) continue;
             byte[] data = Globals.extractFile(res);
             if (data == null) continue;
-            Resource dependency = new Resource(data);
+            ResourceHeader dependency = new ResourceHeader(data);
             if (dependency.method != SerializationMethod.BINARY)
                 mod.add(entry.path, data, entry.GUID);
             else recurse(mod, new Resource(data), Globals.findEntry(res));
@@ -388,6 +383,7 @@ public class Bytes {
     public static SHA1 hashinate(Mod mod, Resource resource, FileEntry entry, HashMap<Integer, MaterialEntry> registry) {
         if (resource.method == SerializationMethod.BINARY) {
             if (registry == null || (registry != null && resource.type != ResourceType.GFX_MATERIAL)) {
+                HashMap<ResourceDescriptor, ResourceDescriptor> replacements = new HashMap<>();
                 for (int i = 0; i < resource.dependencies.size(); ++i) {
                     ResourceDescriptor res = resource.dependencies.get(i);
                     FileEntry dependencyEntry = Globals.findEntry(res);
@@ -422,12 +418,13 @@ public class Bytes {
                     Resource dependency = new Resource(data);
 
                     if (dependency.method == SerializationMethod.BINARY)
-                        resource.replaceDependency(res, new ResourceDescriptor(hashinate(mod, dependency, dependencyEntry), res.type));
+                        replacements.put(res, new ResourceDescriptor(hashinate(mod, dependency, dependencyEntry), res.type));
                     else {
                         mod.add(dependencyEntry.path, data, dependencyEntry.GUID);
-                        resource.replaceDependency(res, new ResourceDescriptor(SHA1.fromBuffer(data), res.type));
+                        replacements.put(res, new ResourceDescriptor(SHA1.fromBuffer(data), res.type));
                     }
                 }
+                resource.replaceDependencies(replacements);
             }
             if (resource.type == ResourceType.PLAN)
                 Plan.removePlanDescriptors(resource, entry.GUID);
@@ -491,15 +488,26 @@ public class Bytes {
         return output;
     }
     
-    public static byte[] computeSignature(byte[] data, byte[] key) {
+    /**
+     * Creates a HMAC-SHA1 for computing a signature incrementally.
+     * @param key Key to sign with
+     * @return Initialized HMAC, or null if it couldn't be created
+     */
+    public static Mac createSignature(byte[] key) {
         SecretKey secretKey = new SecretKeySpec(key, "HmacSHA1");
         try {
             Mac mac = Mac.getInstance("HmacSHA1");
             mac.init(secretKey);
-            return mac.doFinal(data);
+            return mac;
         } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
             System.err.println("An error occurred computing signature.");
         }
-        return new byte[14];
+        return null;
+    }
+
+    public static byte[] computeSignature(byte[] data, byte[] key) {
+        Mac mac = Bytes.createSignature(key);
+        if (mac == null) return new byte[14];
+        return mac.doFinal(data);
     }
 }
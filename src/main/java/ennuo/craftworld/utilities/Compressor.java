@@ -1,102 +1,198 @@
 package ennuo.craftworld.utilities;
 
+import ennuo.craftworld.resources.enums.CompressionProfile;
 import ennuo.craftworld.serializer.Data;
-import ennuo.craftworld.serializer.Output;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
+/**
+ * Compresses and decompresses the chunked zlib streams used by resources.
+ *
+ * Every chunk is an independent zlib stream, so chunks are deflated and inflated
+ * in parallel on the common fork-join pool. Each thread keeps its own Deflater
+ * and Inflater, which get reset between chunks instead of being recreated.
+ * Chunks that don't get any smaller are stored as is, which the format marks
+ * by giving them the same compressed and decompressed size.
+ */
 public class Compressor {
-    public static byte[] deflateData(byte[] data) {
-        try {
-            Deflater deflater = new Deflater(9);
-            ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length);
-            deflater.setInput(data);
-            deflater.finish();
-            byte[] chunk = new byte[1024];
-            while (!deflater.finished()) {
-                int count = deflater.deflate(chunk);
-                stream.write(chunk, 0, count);
-            }
+    public static final int CHUNK_SIZE = 0x8000;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(9));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater());
+
+    /**
+     * Gets the largest size zlib can deflate a buffer to.
+     * @param size Size of the buffer
+     * @return Upper bound of the deflated size
+     */
+    private static int getBound(int size) { return size + (size >>> 12) + (size >>> 14) + (size >>> 25) + 13; }
+
+    /**
+     * Deflates part of a buffer with this thread's Deflater.
+     * @param data Buffer to deflate
+     * @param offset Offset of the data to deflate
+     * @param size Size of the data to deflate
+     * @param profile Compression profile to use
+     * @return Deflated data
+     */
+    private static byte[] deflate(byte[] data, int offset, int size, CompressionProfile profile) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setLevel(profile.level);
+        deflater.setInput(data, offset, size);
+        deflater.finish();
+        byte[] output = new byte[getBound(size)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == output.length)
+                output = Arrays.copyOf(output, output.length * 2);
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        return Arrays.copyOf(output, length);
+    }
+
+    /**
+     * Inflates a zlib stream into part of a buffer with this thread's Inflater.
+     * @param data Buffer containing the zlib stream
+     * @param offset Offset of the zlib stream
+     * @param size Size of the zlib stream
+     * @param output Buffer to inflate into
+     * @param outputOffset Offset to inflate to
+     * @param outputSize Size of the inflated data
+     * @throws DataFormatException If the zlib stream is invalid
+     */
+    private static void inflate(byte[] data, int offset, int size, byte[] output, int outputOffset, int outputSize) throws DataFormatException {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(data, offset, size);
+        int length = 0;
+        while (length < outputSize && !inflater.finished()) {
+            int count = inflater.inflate(output, outputOffset + length, outputSize - length);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+            length += count;
+        }
+    }
+
+    public static byte[] deflateData(byte[] data) { return Compressor.deflateData(data, CompressionProfile.MAX); }
+    public static byte[] deflateData(byte[] data, CompressionProfile profile) { return Compressor.deflate(data, 0, data.length, profile); }
+    public static byte[] deflateData(ByteBuffer data, CompressionProfile profile) {
+        if (!data.hasArray()) return Compressor.deflateData(Compressor.toArray(data), profile);
+        return Compressor.deflate(data.array(), data.arrayOffset() + data.position(), data.remaining(), profile);
+    }
 
-            stream.close();
-            return stream.toByteArray();
-        } catch (IOException ex) { return null; }
+    /**
+     * Copies the remaining bytes of a buffer that isn't backed by an array.
+     * @param data Buffer to copy
+     * @return Remaining bytes of the buffer
+     */
+    private static byte[] toArray(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
     }
-    
+
     public static byte[] inflateData(byte[] data, int size) {
         try {
-            Inflater inflater = new Inflater();
-            inflater.setInput(data);
             byte[] output = new byte[size];
-            inflater.inflate(output);
-            inflater.end();
+            Compressor.inflate(data, 0, data.length, output, 0, size);
             return output;
         } catch (DataFormatException  ex) { return null; }
     }
-    
+
     public static void decompressData(Data data, int endOffset) {
         data.i16(); // Some flag? Always 0x0001
         short chunks = data.i16();
-        
+
         if (chunks == 0) {
             data.setData(data.bytes(endOffset - data.offset));
             return;
         }
-        
+
         int[] compressed = new int[chunks];
         int[] decompressed = new int[chunks];
+        int[] sources = new int[chunks];
+        int[] destinations = new int[chunks];
         int decompressedSize = 0;
         for (int i = 0; i < chunks; ++i) {
             compressed[i] = data.u16();
             decompressed[i] = data.u16();
+            destinations[i] = decompressedSize;
             decompressedSize += decompressed[i];
         }
-        
-        Output inflateStream = new Output(decompressedSize);
+
+        int source = data.offset;
         for (int i = 0; i < chunks; ++i) {
-            byte[] deflatedData = data.bytes(compressed[i]);
+            sources[i] = source;
+            source += compressed[i];
+        }
+        if (source > data.data.length) { data.setData(null); return; }
+
+        byte[] buffer = data.data;
+        byte[] output = new byte[decompressedSize];
+        boolean isValid = IntStream.range(0, chunks).parallel().allMatch(i -> {
             if (compressed[i] == decompressed[i]) {
-                inflateStream.bytes(deflatedData);
-                continue;
+                System.arraycopy(buffer, sources[i], output, destinations[i], compressed[i]);
+                return true;
             }
-            byte[] inflatedData = Compressor.inflateData(deflatedData, decompressed[i]);
-            if (inflatedData == null) { data.setData(null); return; }
-            inflateStream.bytes(inflatedData);
-        }
-        data.setData(inflateStream.buffer);
+            try { Compressor.inflate(buffer, sources[i], compressed[i], output, destinations[i], decompressed[i]); }
+            catch (DataFormatException ex) { return false; }
+            return true;
+        });
+
+        if (!isValid) { data.setData(null); return; }
+        data.setData(output);
     }
 
-    public static byte[] getCompressedStream(byte[] data) {
+    public static byte[] getCompressedStream(byte[] data) { return Compressor.getCompressedStream(data, CompressionProfile.MAX); }
+    public static byte[] getCompressedStream(byte[] data, CompressionProfile profile) {
         if (data == null) return new byte[] {};
-        byte[][] chunks = Bytes.Split(data, 0x8000);
-
-        short[] compressedSize = new short[chunks.length];
-        short[] uncompressedSize = new short[chunks.length];
-
-        byte[][] zlibStreams = new byte[chunks.length][];
-        
-        for (int i = 0; i < chunks.length; ++i) {
-            byte[] compressed = Compressor.deflateData(chunks[i]);
-            zlibStreams[i] = compressed;
-            compressedSize[i] = (short) compressed.length;
-            uncompressedSize[i] = (short) chunks[i].length;
-        }
+        return Compressor.getCompressedStream(data, 0, data.length, profile);
+    }
 
-        Output output = new Output(4 + (chunks.length * 4), 0);
-        output.i16((short) 1);
-        output.i16((short) zlibStreams.length);
+    /**
+     * Compresses the remaining bytes of a buffer, reading them in place
+     * when the buffer is backed by an array.
+     * @param data Buffer to compress
+     * @param profile Compression profile to use
+     * @return Compressed stream
+     */
+    public static byte[] getCompressedStream(ByteBuffer data, CompressionProfile profile) {
+        if (data == null) return new byte[] {};
+        if (!data.hasArray()) return Compressor.getCompressedStream(Compressor.toArray(data), profile);
+        return Compressor.getCompressedStream(data.array(), data.arrayOffset() + data.position(), data.remaining(), profile);
+    }
 
-        for (int i = 0; i < zlibStreams.length; ++i) {
-            output.i16(compressedSize[i]);
-            output.i16(uncompressedSize[i]);
-        }
+    private static byte[] getCompressedStream(byte[] data, int start, int length, CompressionProfile profile) {
+        int chunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
 
-        byte[] compressed = Bytes.Combine(zlibStreams);
-        return Bytes.Combine(new byte[][] {
-            output.buffer, compressed
+        byte[][] zlibStreams = new byte[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(i -> {
+            int offset = start + (i * CHUNK_SIZE);
+            int size = Math.min(CHUNK_SIZE, length - (i * CHUNK_SIZE));
+            byte[] stream = Compressor.deflate(data, offset, size, profile);
+            if (stream.length >= size)
+                stream = Arrays.copyOfRange(data, offset, offset + size);
+            zlibStreams[i] = stream;
         });
+
+        int size = 4 + (chunks * 4);
+        for (byte[] stream : zlibStreams)
+            size += stream.length;
+
+        ByteBuffer output = ByteBuffer.allocate(size);
+        output.putShort((short) 1);
+        output.putShort((short) chunks);
+        for (int i = 0; i < chunks; ++i) {
+            output.putShort((short) zlibStreams[i].length);
+            output.putShort((short) Math.min(CHUNK_SIZE, length - (i * CHUNK_SIZE)));
+        }
+        for (byte[] stream : zlibStreams)
+            output.put(stream);
+
+        return output.array();
     }
 }
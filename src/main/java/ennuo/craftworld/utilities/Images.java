@@ -1,6 +1,7 @@
 package ennuo.craftworld.utilities;
 
 import ennuo.craftworld.resources.Texture;
+import ennuo.craftworld.resources.enums.CompressionProfile;
 import ennuo.craftworld.serializer.Output;
 import ennuo.craftworld.resources.io.FileIO;
 import ennuo.craftworld.serializer.Data;
@@ -13,9 +14,11 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
@@ -24,8 +27,14 @@ import net.npe.dds.DDSReader;
 import org.imgscalr.Scalr;
 
 public class Images {
-    public static byte[] toGTF(BufferedImage image) {
-        Data data = new Data(toDDS(image));
+    /**
+     * Held around every call into squish, since it isn't safe to use from several threads at once.
+     */
+    private static final Object SQUISH_LOCK = new Object();
+    
+    public static byte[] toGTF(BufferedImage image) { return Images.toGTF(image, CompressionProfile.MAX); }
+    public static byte[] toGTF(BufferedImage image, CompressionProfile profile) {
+        Data data = new Data(toDDS(image, Images.getCompressionMethod(profile)));
         if (data.data == null) return null;
 
         data.seek(0x80);
@@ -35,7 +44,7 @@ public class Images {
         if (DDS == null)
             return null;
 
-        DDS = Compressor.deflateData(DDS);
+        DDS = Compressor.deflateData(DDS, profile);
 
         if (DDS == null) {
             System.err.println("Failed to compress DDS!");
@@ -68,8 +77,15 @@ public class Images {
         return x ^ (x >> 1);
     }
     
-    private static byte[] getRGBA(BufferedImage image) {
-        int[] ARGB = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    /**
+     * Gets the RGBA bytes of a range of rows of an image.
+     * @param image Image to read
+     * @param y First row to read
+     * @param rows Number of rows to read
+     * @return RGBA bytes of the rows
+     */
+    private static byte[] getRGBA(BufferedImage image, int y, int rows) {
+        int[] ARGB = image.getRGB(0, y, image.getWidth(), rows, null, 0, image.getWidth());
         byte[] RGBA = new byte[ARGB.length * 4];
         for (int i = 0; i < ARGB.length; ++i) {
             RGBA[(4 * i) + 0] = (byte) ((ARGB[i] >> 16) & 0xff);
@@ -79,45 +95,87 @@ public class Images {
         }
         return RGBA;
     }
+    
+    /**
+     * Gets the squish fit to use for a compression profile,
+     * range fit is a lot faster, but gives noticeably worse gradients.
+     * @param profile Compression profile to use
+     * @return Squish fit for the profile
+     */
+    private static Squish.CompressionMethod getCompressionMethod(CompressionProfile profile) {
+        if (profile == CompressionProfile.FAST) return Squish.CompressionMethod.RANGE_FIT;
+        return Squish.CompressionMethod.CLUSTER_FIT;
+    }
 
-
-    private static byte[] toDDS(BufferedImage image) {
+    private static byte[] toDDS(BufferedImage image) { return Images.toDDS(image, Squish.CompressionMethod.CLUSTER_FIT); }
+    
+    /**
+     * Compresses an image and its mipmaps to a DXT1 or DXT5 DDS.
+     * 
+     * The mipmap chain is built up front, then every mipmap is compressed
+     * straight into a buffer sized from the header. Squish keeps its fit state
+     * in shared objects, so only one image is ever compressed at a time.
+     * @param image Image to compress
+     * @param method Squish fit to use
+     * @return Compressed DDS
+     */
+    public static byte[] toDDS(BufferedImage image, Squish.CompressionMethod method) {
         int width = toNearest(image.getWidth());
         int height = toNearest(image.getHeight());
         
-        int originalWidth = width, originalHeight = height;
-        
         Squish.CompressionType type = Squish.CompressionType.DXT1;
-        int format = 0x86;
+        int format = 0x86, blockSize = 8;
         if (image.getColorModel().hasAlpha()) {
             format = 0x88;
             type = Squish.CompressionType.DXT5;
+            blockSize = 16;
         }
 
+        // Each mipmap is resized from the last, so the chain itself has to be built in order.
+        ArrayList<BufferedImage> mipmaps = new ArrayList<>();
         image = Scalr.resize(image, Scalr.Mode.FIT_EXACT, width, height);
-        byte[] DDS = Squish.compressImage(getRGBA(image), width, height, null, type);
-        int mipCount = 0;
-        while (true) {
-            width = toNearest(width - 1);
-            height = toNearest(height - 1);
-            image = Scalr.resize(image, Scalr.Method.AUTOMATIC, width, height);
-            DDS = Bytes.Combine(DDS, Squish.compressImage(getRGBA(image), width, height, null, type));
-            mipCount += 1;
-            if (width == 1|| height == 1) break;
+        mipmaps.add(image);
+        int mipWidth = width, mipHeight = height;
+        while (mipWidth != 1 && mipHeight != 1) {
+            mipWidth /= 2;
+            mipHeight /= 2;
+            image = Scalr.resize(image, Scalr.Method.AUTOMATIC, mipWidth, mipHeight);
+            mipmaps.add(image);
+        }
+        
+        int levels = mipmaps.size();
+        int size = 0x80;
+        for (BufferedImage mipmap : mipmaps)
+            size += blockSize * ((mipmap.getWidth() + 3) / 4) * ((mipmap.getHeight() + 3) / 4);
+        
+        byte[] DDS = new byte[size];
+        byte[] header = Texture.getDDSHeader(format, width, height, levels - 1);
+        System.arraycopy(header, 0, DDS, 0, header.length);
+        
+        int offset = 0x80;
+        for (BufferedImage mipmap : mipmaps) {
+            int w = mipmap.getWidth(), h = mipmap.getHeight();
+            int length = blockSize * ((w + 3) / 4) * ((h + 3) / 4);
+            byte[] RGBA = getRGBA(mipmap, 0, h);
+            byte[] compressed;
+            synchronized (SQUISH_LOCK) { compressed = Squish.compressImage(RGBA, w, h, null, type, method); }
+            System.arraycopy(compressed, 0, DDS, offset, length);
+            offset += length;
         }
         
-        return Bytes.Combine(Texture.getDDSHeader(format, originalWidth, originalHeight, mipCount), DDS);
+        return DDS;
     }
 
-    public static byte[] toTEX(BufferedImage image) {
-        byte[] DDS = toDDS(image);
+    public static byte[] toTEX(BufferedImage image) { return Images.toTEX(image, CompressionProfile.MAX); }
+    public static byte[] toTEX(BufferedImage image, CompressionProfile profile) {
+        byte[] DDS = toDDS(image, Images.getCompressionMethod(profile));
 
         if (DDS == null) {
             System.err.println("Failed to convert BufferedImage to DDS!");
             return null;
         }
 
-        DDS = Compressor.getCompressedStream(DDS);
+        DDS = Compressor.getCompressedStream(DDS, profile);
 
         if (DDS == null) {
             System.err.println("Failed to compress DDS!");
@@ -131,15 +189,29 @@ public class Images {
         return output.buffer;
     }
 
-    public static BufferedImage fromDDS(byte[] DDS) {
+    public static BufferedImage fromDDS(byte[] DDS) { return Images.fromDDS(DDS, 0); }
+    
+    /**
+     * Decodes the smallest mipmap of a DDS that still covers a preview,
+     * instead of decoding the full resolution image just to scale it down.
+     * @param DDS DDS to decode
+     * @param width Width of the preview
+     * @param height Height of the preview
+     * @return Decoded mipmap
+     */
+    public static BufferedImage fromDDS(byte[] DDS, int width, int height) {
+        return Images.fromDDS(DDS, DDSReader.getMipmapLevel(DDS, Math.max(width, height)));
+    }
+    
+    private static BufferedImage fromDDS(byte[] DDS, int level) {
         try {
-            int[] pixels = DDSReader.read(DDS, DDSReader.ARGB, 0);
-            int width = DDSReader.getWidth(DDS), height = DDSReader.getHeight(DDS);
-            BufferedImage image = new BufferedImage(width, height, 2);
-            if (image != null) {
-                image.setRGB(0, 0, width, height, pixels, 0, width);
-                return image;
-            }
+            int width = DDSReader.getWidth(DDS, level);
+            int height = DDSReader.getHeight(DDS, level);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            if (!DDSReader.read(DDS, DDSReader.ARGB, level, raster))
+                throw new IllegalArgumentException("Unsupported DDS format!");
+            return image;
         } catch (Exception ex) {
             System.err.println("There was an error when converting DDS to BufferedImage.");
         }
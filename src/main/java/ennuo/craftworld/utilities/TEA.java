@@ -1,77 +1,113 @@
 package ennuo.craftworld.utilities;
 
-import ennuo.craftworld.serializer.Data;
-import ennuo.craftworld.serializer.Output;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
+/**
+ * XXTEA over big-endian words.
+ *
+ * Blocks are encrypted in place through an IntBuffer view of the array,
+ * trailing bytes that don't make up a full word are left out of the block.
+ * The methods that return a new array keep the old behaviour of dropping them.
+ */
 public class TEA {
     private static int[] KEY = { 28773565, 345376726, 133778901, 282823840 };
     private static int DELTA = 0x9e3779b9;
-    
+
     private static int MX(int sum, int y, int z, int p, int e) {
         return (z >>> 5 ^ y << 2) + (y >>> 3 ^ z << 4) ^ (sum ^ y) + (KEY[p & 3 ^ e] ^ z);
     }
-    
-    private static int[] toUIntArray(byte[] data) {
-        Data memory = new Data(data);
-        int[] array = new int[memory.length / 4];
-        for (int i = 0; i < memory.length / 4; ++i)
-            array[i] = (int) memory.u32f();
-        return array;
-    }
-    
-    private static byte[] fromUIntArray(int[] data) {
-        Output memory = new Output(data.length * 4);
-        for (int i = 0; i < data.length; ++i)
-            memory.u32f(data[i]);
-        return memory.buffer;
+
+    private static IntBuffer getView(byte[] data) {
+        return ByteBuffer.wrap(data, 0, data.length & ~3).asIntBuffer();
     }
-    
-    public static byte[] encrypt(byte[] data) {
-        int[] v = TEA.toUIntArray(data);
-        
-        int n = v.length - 1;
 
-        if (n < 1) 
-            return data;
+    /**
+     * Encrypts a block in place.
+     * @param data Block to encrypt
+     */
+    public static void encryptInPlace(byte[] data) {
+        IntBuffer v = TEA.getView(data);
+
+        int n = v.limit() - 1;
+
+        if (n < 1)
+            return;
         int p, q = 6 + 52 / (n + 1);
-        int z = v[n], y, sum = 0, e;
+        int z = v.get(n), y, sum = 0, e;
 
         while (q-- > 0) {
             sum = sum + DELTA;
             e = sum >>> 2 & 3;
             for (p = 0; p < n; p++) {
-                y = v[p + 1];
-                z = v[p] += MX(sum, y, z, p, e);
+                y = v.get(p + 1);
+                z = v.get(p) + MX(sum, y, z, p, e);
+                v.put(p, z);
             }
-            y = v[0];
-            z = v[n] += MX(sum, y, z, p, e);
+            y = v.get(0);
+            z = v.get(n) + MX(sum, y, z, p, e);
+            v.put(n, z);
         }
-        
-        return TEA.fromUIntArray(v);
     }
-    
-    public static byte[] decrypt(byte[] data) {
-        int[] v = TEA.toUIntArray(data);
-        int n = v.length - 1;
 
-        if (n < 1) 
-            return data;
-        
+    /**
+     * Decrypts a block in place.
+     * @param data Block to decrypt
+     */
+    public static void decryptInPlace(byte[] data) {
+        IntBuffer v = TEA.getView(data);
+        int n = v.limit() - 1;
+
+        if (n < 1)
+            return;
+
         int p, q = 6 + 52 / (n + 1);
-        int z, y = v[0], sum = q * DELTA, e;
+        int z, y = v.get(0), sum = q * DELTA, e;
 
         while (sum != 0) {
             e = sum >>> 2 & 3;
             for (p = n; p > 0; p--) {
-                z = v[p - 1];
-                y = v[p] -= MX(sum, y, z, p, e);
+                z = v.get(p - 1);
+                y = v.get(p) - MX(sum, y, z, p, e);
+                v.put(p, y);
             }
-            z = v[n];
-            y = v[0] -= MX(sum, y, z, p, e);
+            z = v.get(n);
+            y = v.get(0) - MX(sum, y, z, p, e);
+            v.put(0, y);
             sum = sum - DELTA;
         }
-        
-        return TEA.fromUIntArray(v);
     }
-    
+
+    /**
+     * Encrypts independent blocks in place, in parallel.
+     * @param blocks Blocks to encrypt
+     */
+    public static void encryptInPlace(byte[][] blocks) {
+        IntStream.range(0, blocks.length).parallel().forEach(i -> TEA.encryptInPlace(blocks[i]));
+    }
+
+    /**
+     * Decrypts independent blocks in place, in parallel.
+     * @param blocks Blocks to decrypt
+     */
+    public static void decryptInPlace(byte[][] blocks) {
+        IntStream.range(0, blocks.length).parallel().forEach(i -> TEA.decryptInPlace(blocks[i]));
+    }
+
+    public static byte[] encrypt(byte[] data) {
+        if (data.length < 8) return data;
+        byte[] output = Arrays.copyOf(data, data.length & ~3);
+        TEA.encryptInPlace(output);
+        return output;
+    }
+
+    public static byte[] decrypt(byte[] data) {
+        if (data.length < 8) return data;
+        byte[] output = Arrays.copyOf(data, data.length & ~3);
+        TEA.decryptInPlace(output);
+        return output;
+    }
+
 }
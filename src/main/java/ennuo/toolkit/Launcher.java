@@ -3,11 +3,18 @@ package ennuo.toolkit;
 import com.github.weisj.darklaf.LafManager;
 import com.github.weisj.darklaf.theme.DarculaTheme;
 import ennuo.toolkit.configurations.Config;
+import ennuo.toolkit.utilities.TextureConversionPipeline;
 import ennuo.toolkit.windows.Toolkit;
 import java.awt.EventQueue;
+import java.util.Arrays;
 
 public class Launcher {
     public static void main(String args[]) {
+        if (args.length != 0 && args[0].equals("--convert-textures")) {
+            boolean success = TextureConversionPipeline.run(Arrays.copyOfRange(args, 1, args.length));
+            System.exit(success ? 0 : 1);
+        }
+        
         LafManager.install(new DarculaTheme());
         Config.initialize();
         EventQueue.invokeLater(() -> new Toolkit().run(args).setVisible(true));
@@ -10,9 +10,11 @@ import ennuo.craftworld.swing.FileNode;
 import ennuo.craftworld.types.BigStreamingFart;
 import ennuo.craftworld.types.FileArchive;
 import ennuo.craftworld.types.FileEntry;
+import ennuo.toolkit.utilities.ExtractionPipeline;
 import ennuo.toolkit.utilities.FileChooser;
 import ennuo.toolkit.utilities.Globals;
 import ennuo.toolkit.windows.Toolkit;
+import java.awt.EventQueue;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -25,6 +27,7 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.swing.JTree;
+import javax.swing.ProgressMonitor;
 import javax.swing.tree.TreePath;
 
 public class ArchiveCallbacks {
@@ -32,7 +35,7 @@ public class ArchiveCallbacks {
         int index = Toolkit.instance.isArchiveLoaded(file);
         if (index == -1) {
             FileArchive archive = null;
-            try { archive = new FileArchive(file); }
+            try { archive = new FileArchive(file, true); }
             catch (SerializationException ex) {
                 System.err.println(ex.getMessage());
                 return;
@@ -71,15 +74,13 @@ public class ArchiveCallbacks {
             FileEntry entry = archive.entries.get(i);
             byte[] data = archive.extract(entry);
             if (data == null) continue;
-            String realSHA1 = SHA1.fromBuffer(data).toString();
-            String storedSHA1 = entry.hash.toString();
-            if (realSHA1.equals(storedSHA1)) {
+            if (SHA1.fromBuffer(data).equals(entry.hash)) {
                 table.sha1(entry.hash);
                 table.i32f((int) entry.offset);
                 table.i32f(entry.size);
             } else {
                 toRemove.add(entry);
-                archive.lookup.remove(storedSHA1);
+                archive.lookup.remove(entry.hash);
                 count++;
             }
         }
@@ -167,31 +168,18 @@ public class ArchiveCallbacks {
             return;
         }
         if (Globals.entries.size() != 1) {
-            int success = 0;
-            int total = 0;
             String path = FileChooser.openDirectory();
             if (path == null) return;
-            for (int i = 0; i < Globals.entries.size(); ++i) {
-                FileNode node = Globals.entries.get(i);
-                if (node.entry != null) {
-                    total++;
-                    byte[] data;
-                    if (node.entry.data == null)
-                        data = Globals.extractFile(node.entry.hash);
-                    else
-                        data = node.entry.data;
-                    if (data != null) {
-                        data = (decompress) ? new Resource(data).handle.data : data;
-                        String output = Paths.get(path, node.path, node.header).toString();
-                        File file = new File(output);
-                        if (file.getParentFile() != null)
-                            file.getParentFile().mkdirs();
-                        if (FileIO.write(data, output))
-                            success++;
-                    }
-                }
-            }
-            System.out.println("Finished extracting " + success + "/" + total + " entries.");
+            ExtractionPipeline pipeline = new ExtractionPipeline(Globals.entries, path, decompress);
+            ProgressMonitor monitor = new ProgressMonitor(Toolkit.instance, "Extracting entries...", null, 0, pipeline.getTotal());
+            monitor.setMillisToDecideToPopup(0);
+            Toolkit.instance.extractionService.submit(() -> {
+                pipeline.run(done -> EventQueue.invokeLater(() -> {
+                    if (monitor.isCanceled()) pipeline.cancel();
+                    else monitor.setProgress(done);
+                }));
+                EventQueue.invokeLater(() -> monitor.close());
+            });
         } else {
             FileNode node = Globals.entries.get(0);
             if (node.entry != null) {
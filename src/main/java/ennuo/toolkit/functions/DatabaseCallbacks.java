@@ -200,10 +200,8 @@ public class DatabaseCallbacks {
         hash = hash.replaceAll("\\s", "");
         if (hash.startsWith("h"))
             hash = hash.substring(1);
-        entry.hash = new SHA1(hash);
-        
         FileDB db = (FileDB) Toolkit.instance.getCurrentDB();
-        db.shouldSave = true;
+        db.edit(entry, new SHA1(hash));
         
         Toolkit.instance.updateWorkspace();
         Toolkit.instance.setEditorPanel(node);
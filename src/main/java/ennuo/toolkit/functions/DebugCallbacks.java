@@ -1,6 +1,6 @@
 package ennuo.toolkit.functions;
 
-import ennuo.craftworld.resources.Resource;
+import ennuo.craftworld.resources.ResourceHeader;
 import ennuo.craftworld.resources.io.FileIO;
 import ennuo.craftworld.types.FileDB;
 import ennuo.craftworld.types.FileEntry;
@@ -27,7 +27,7 @@ public class DebugCallbacks {
                 byte[] data = Globals.extractFile(entry.hash);
                 if (data == null) continue;
                 try {
-                    Resource resource = new Resource(data);
+                    ResourceHeader resource = new ResourceHeader(data);
                     if (resource.dependencies == null || (resource.dependencies != null && resource.dependencies.size() == 0)) 
                         continue;
                     builder.append(String.format("%s (g%d)\n", entry.path, entry.GUID));
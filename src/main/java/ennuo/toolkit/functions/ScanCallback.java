@@ -9,16 +9,20 @@ import ennuo.craftworld.resources.enums.Magic;
 import ennuo.craftworld.resources.enums.ResourceType;
 import ennuo.craftworld.resources.structs.SHA1;
 import ennuo.craftworld.types.FileArchive;
+import ennuo.craftworld.types.FileArchiveWriter;
 import ennuo.craftworld.types.FileDB;
 import ennuo.craftworld.types.FileEntry;
 import ennuo.toolkit.utilities.FileChooser;
 import ennuo.toolkit.utilities.Globals;
 import ennuo.toolkit.windows.Toolkit;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ScanCallback {
     public static void scanRawData() {
@@ -93,147 +97,146 @@ public class ScanCallback {
 
             int resourceCount = 0;
             int GUID = 0x00150000;
-            while ((data.offset + 4) <= data.length) {
-                toolkit.progressBar.setValue(data.offset + 1);
-                int begin = data.offset;
-
-                if (!VALUES.contains(data.data[data.offset])) {
-                    data.offset++;
-                    continue;
-                }
+            boolean success = false;
+            try (FileArchiveWriter writer = new FileArchiveWriter(farc)) {
+                while ((data.offset + 4) <= data.length) {
+                    toolkit.progressBar.setValue(data.offset + 1);
+                    int begin = data.offset;
+
+                    if (!VALUES.contains(data.data[data.offset])) {
+                        data.offset++;
+                        continue;
+                    }
 
-                String magic = data.str(3);
+                    String magic = data.str(3);
 
-                if (!HEADERS.contains(magic)) {
-                    data.seek(begin + 1);
-                    continue;
-                }
+                    if (!HEADERS.contains(magic)) {
+                        data.seek(begin + 1);
+                        continue;
+                    }
 
-                String type = data.str(1);
+                    String type = data.str(1);
 
-                try {
                     byte[] buffer = null;
-
-                    switch (type) {
-                        case "i":
-                            {
-                                if (!magic.equals("BIK")) break;
-                                int size = Integer.reverseBytes(data.i32());
-                                data.offset -= 8;
-                                buffer = data.bytes(size + 8);
-                            }
-                        case "t":
-                            {
-                                if (magic.equals("FSB") || magic.equals("TEX")) break;
-                                int end = 0;
-                                while ((data.offset + 4) <= data.length) {
-                                    String mag = data.str(3);
-                                    if (HEADERS.contains(mag)) {
-                                        String t = data.str(1);
-                                        if (t.equals(" ") || t.equals("4") || t.equals("b") || t.equals("t") || t.equals("i")) {
-                                            data.offset -= 4;
-                                            end = data.offset;
-                                            data.seek(begin);
-                                            break;
-                                        }
-                                    } else data.offset -= 2;
-                                }
-
-                                buffer = data.bytes(end - begin);
-
-                                final String converted = new String(buffer, StandardCharsets.UTF_8);
-                                final byte[] output = converted.getBytes(StandardCharsets.UTF_8);
-
-                                if (!Arrays.equals(buffer, output))
-                                    buffer = null;
-
-                                break;
-                            }
-
-
-                        case "4":
-                            {
-                                if (!magic.equals("FSB")) break;
-                                int count = Integer.reverseBytes(data.i32());
-                                data.forward(0x4);
-                                int size = Integer.reverseBytes(data.i32());
-                                data.forward(0x20);
-                                for (int i = 0; i < count; ++i)
-                                    data.forward(Short.reverseBytes(data.i16()) - 2);
-                                if (data.data[data.offset] == 0) {
-                                    while (data.i8() == 0);
-                                    data.offset -= 1;
+                    try {
+                        switch (type) {
+                            case "i":
+                                {
+                                    if (!magic.equals("BIK")) break;
+                                    int size = Integer.reverseBytes(data.i32());
+                                    data.offset -= 8;
+                                    buffer = data.bytes(size + 8);
                                 }
-                                data.forward(size);
-                                size = data.offset - begin;
-                                data.seek(begin);
-                                buffer = data.bytes(size);
-                                break;
-                            }
+                            case "t":
+                                {
+                                    if (magic.equals("FSB") || magic.equals("TEX")) break;
+                                    int end = 0;
+                                    while ((data.offset + 4) <= data.length) {
+                                        String mag = data.str(3);
+                                        if (HEADERS.contains(mag)) {
+                                            String t = data.str(1);
+                                            if (t.equals(" ") || t.equals("4") || t.equals("b") || t.equals("t") || t.equals("i")) {
+                                                data.offset -= 4;
+                                                end = data.offset;
+                                                data.seek(begin);
+                                                break;
+                                            }
+                                        } else data.offset -= 2;
+                                    }
+
+                                    buffer = data.bytes(end - begin);
+
+                                    final String converted = new String(buffer, StandardCharsets.UTF_8);
+                                    final byte[] output = converted.getBytes(StandardCharsets.UTF_8);
+
+                                    if (!Arrays.equals(buffer, output))
+                                        buffer = null;
 
-                        case "b":
-                            {
-                                if (magic.equals("FSB") || magic.equals("TEX")) break;
-                                int revision = data.i32f();
-                                if (revision > 0x021803F9 || revision < 0) {
-                                    data.seek(begin + 1);
-                                    continue;
-                                }
-                                int dependencyOffset = data.i32f();
-                                data.forward(dependencyOffset - 12);
-                                int count = data.i32f();
-                                for (int j = 0; j < count; ++j) {
-                                    data.resource(ResourceType.FILE_OF_BYTES, true);
-                                    data.i32f();
+                                    break;
                                 }
 
-                                int size = data.offset - begin;
-                                data.seek(begin);
-
-                                buffer = data.bytes(size);
-                            }
 
-                        case " ":
-                            {
-                                if (magic.equals("TEX")) data.forward(2);
-                                else if (magic.equals("GTF")) data.forward(0x1a);
-                                else break;
-                                int count = data.i16();
-                                int size = 0;
-                                for (int j = 0; j < count; ++j) {
-                                    size += data.i16();
-                                    data.i16();
+                            case "4":
+                                {
+                                    if (!magic.equals("FSB")) break;
+                                    int count = Integer.reverseBytes(data.i32());
+                                    data.forward(0x4);
+                                    int size = Integer.reverseBytes(data.i32());
+                                    data.forward(0x20);
+                                    for (int i = 0; i < count; ++i)
+                                        data.forward(Short.reverseBytes(data.i16()) - 2);
+                                    if (data.data[data.offset] == 0) {
+                                        while (data.i8() == 0);
+                                        data.offset -= 1;
+                                    }
+                                    data.forward(size);
+                                    size = data.offset - begin;
+                                    data.seek(begin);
+                                    buffer = data.bytes(size);
+                                    break;
                                 }
-                                data.forward(size);
 
-
-                                if (data.offset < 0 || ((data.offset + 1) >= data.length)) {
-                                    data.seek(begin + 1);
-                                    continue;
+                            case "b":
+                                {
+                                    if (magic.equals("FSB") || magic.equals("TEX")) break;
+                                    int revision = data.i32f();
+                                    if (revision > 0x021803F9 || revision < 0) {
+                                        data.seek(begin + 1);
+                                        continue;
+                                    }
+                                    int dependencyOffset = data.i32f();
+                                    data.forward(dependencyOffset - 12);
+                                    int count = data.i32f();
+                                    for (int j = 0; j < count; ++j) {
+                                        data.resource(ResourceType.FILE_OF_BYTES, true);
+                                        data.i32f();
+                                    }
+
+                                    int size = data.offset - begin;
+                                    data.seek(begin);
+
+                                    buffer = data.bytes(size);
                                 }
 
-                                size = data.offset - begin;
-                                data.seek(begin);
-                                buffer = data.bytes(size);
-                            }
+                            case " ":
+                                {
+                                    if (magic.equals("TEX")) data.forward(2);
+                                    else if (magic.equals("GTF")) data.forward(0x1a);
+                                    else break;
+                                    int count = data.i16();
+                                    int size = 0;
+                                    for (int j = 0; j < count; ++j) {
+                                        size += data.i16();
+                                        data.i16();
+                                    }
+                                    data.forward(size);
+
+
+                                    if (data.offset < 0 || ((data.offset + 1) >= data.length)) {
+                                        data.seek(begin + 1);
+                                        continue;
+                                    }
+
+                                    size = data.offset - begin;
+                                    data.seek(begin);
+                                    buffer = data.bytes(size);
+                                }
 
 
+                        }
+                    } catch (Exception e) {
+                        data.seek(begin + 1);
+                        continue;
                     }
 
                     data.seek(begin + 1);
+                    if (buffer == null) continue;
 
-                    if (buffer != null) {
-                        int querySize = ((buffer.length * 10) + farc.queueSize + farc.hashTable.length + 8 + (farc.entries.size() * 0x1C)) * 2;
-                        if (querySize < 0 || querySize >= Integer.MAX_VALUE) {
-                            System.out.println("Ran out of memory, flushing current changes...");
-                            farc.save(toolkit.progressBar);
-                            toolkit.progressBar.setMaximum(data.length);
-                            toolkit.progressBar.setValue(data.offset + 1);
-                        }
-
-                        resourceCount++;
-                        farc.add(buffer);
+                    // A failed write leaves the archive in an unknown state, so it ends the scan.
+                    resourceCount++;
+                    writer.add(buffer);
 
+                    try {
                         SHA1 sha1 = SHA1.fromBuffer(buffer);
                         FileEntry entry = Globals.findEntry(sha1);
                         if (entry != null) {
@@ -275,21 +278,21 @@ public class ScanCallback {
 
                             System.out.println("Found Resource : " + magic + type + " (0x" + Bytes.toHex(begin) + ")");
                         }
-
+                    } catch (Exception e) {
+                        System.err.println("Failed to register resource at 0x" + Bytes.toHex(begin));
                     }
-
-                } catch (Exception e) {
-                    data.seek(begin + 1);
                 }
+                success = true;
+            } catch (IOException ex) {
+                System.err.println("There was an error writing to the FileArchive, aborting scan.");
+                Logger.getLogger(ScanCallback.class.getName()).log(Level.SEVERE, null, ex);
             }
 
-
             toolkit.progressBar.setVisible(false);
             toolkit.progressBar.setMaximum(0);
             toolkit.progressBar.setValue(0);
 
-            farc.save(toolkit.progressBar);
-            out.save(out.path);
+            if (success) out.save(out.path);
         });
     }
 }
\ No newline at end of file
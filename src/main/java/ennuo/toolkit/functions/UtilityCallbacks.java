@@ -10,6 +10,7 @@ import ennuo.craftworld.swing.FileModel;
 import ennuo.craftworld.swing.FileNode;
 import ennuo.craftworld.types.BigStreamingFart;
 import ennuo.craftworld.types.FileArchive;
+import ennuo.craftworld.types.FileArchiveWriter;
 import ennuo.craftworld.types.FileDB;
 import ennuo.craftworld.types.FileEntry;
 import ennuo.craftworld.types.mods.Mod;
@@ -18,6 +19,9 @@ import ennuo.toolkit.utilities.Globals;
 import ennuo.toolkit.windows.editors.ModEditor;
 import ennuo.toolkit.windows.Toolkit;
 import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 import javax.swing.JTree;
 import javax.swing.tree.TreePath;
@@ -73,7 +77,7 @@ public class UtilityCallbacks {
 
         File patch = FileChooser.openFile("patch.farc", "farc", false);
         if (patch == null) return;
-        FileArchive pArchive = new FileArchive(patch);
+        FileArchive pArchive = new FileArchive(patch, true);
 
         if (pArchive == null) {
             System.err.println("Patch FileArchive is null! Aborting!");
@@ -85,25 +89,17 @@ public class UtilityCallbacks {
             toolkit.progressBar.setMaximum(pArchive.entries.size());
             toolkit.progressBar.setValue(0);
             int count = 0;
-            for (FileEntry entry: pArchive.entries) {
-                toolkit.progressBar.setValue(count + 1);
-
-                byte[] data = pArchive.extract(entry);
-
-                int querySize = ((data.length * 10) + archive.queueSize + archive.hashTable.length + 8 + (archive.entries.size() * 0x1C)) * 2;
-                if (querySize < 0 || querySize >= Integer.MAX_VALUE) {
-                    System.out.println("Ran out of memory, flushing current changes...");
-                    archive.save(toolkit.progressBar);
-                    toolkit.progressBar.setMaximum(pArchive.entries.size());
+            try (FileArchiveWriter writer = new FileArchiveWriter(archive)) {
+                for (FileEntry entry: pArchive.entries) {
                     toolkit.progressBar.setValue(count + 1);
+                    writer.add(pArchive.extract(entry));
+                    count++;
                 }
-
-                archive.add(pArchive.extract(entry));
-                count++;
+            } catch (IOException ex) {
+                System.err.println("There was an error merging the FileArchives.");
+                Logger.getLogger(UtilityCallbacks.class.getName()).log(Level.SEVERE, null, ex);
             }
 
-            archive.save(toolkit.progressBar);
-
             toolkit.progressBar.setVisible(false);
             toolkit.progressBar.setMaximum(0); toolkit.progressBar.setValue(0);
         });
@@ -218,7 +214,7 @@ public class UtilityCallbacks {
         FileDB out = new FileDB(dumpDB);
         FileDB db = (FileDB) Toolkit.instance.getCurrentDB();
         
-        FileArchive archive = new FileArchive(dumpFARC);
+        FileArchive archive = new FileArchive(dumpFARC, true);
         for (FileEntry entry : archive.entries) {
             FileEntry[] matches = db.findAll(entry.hash);
             if (matches.length != 0) {
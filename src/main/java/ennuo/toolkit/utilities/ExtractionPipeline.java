@@ -0,0 +1,267 @@
+package ennuo.toolkit.utilities;
+
+import ennuo.craftworld.resources.io.ResourceInputStream;
+import ennuo.craftworld.swing.FileNode;
+import ennuo.craftworld.types.BigStreamingFart;
+import ennuo.craftworld.types.FileArchive;
+import ennuo.craftworld.types.FileEntry;
+import ennuo.craftworld.types.mods.Mod;
+import ennuo.toolkit.windows.Toolkit;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Extracts a large number of entries to a folder.
+ *
+ * Entries are grouped by the FileArchive they're stored in and read in order of their
+ * offset, so the archive is read front to back. Decompression happens on a pool of workers,
+ * and the results are handed to a single writer, with only a limited number of entries
+ * in flight at once. Resources are decompressed by streaming them into their file
+ * on the worker, so their decompressed data is never held in memory. Files are written under a temporary name and renamed once complete,
+ * so running the same extraction again resumes it, skipping every file that already exists.
+ */
+public class ExtractionPipeline {
+    private static final long REPORT_INTERVAL = 5000;
+
+    private static class Job {
+        private final FileNode node;
+        private final Path output;
+        private FileEntry source;
+        private byte[] data;
+
+        /**
+         * Size of the decompressed file if it was already written by a worker.
+         */
+        private long staged = -1;
+
+        private Job(FileNode node, Path output) {
+            this.node = node;
+            this.output = output;
+        }
+    }
+
+    private final List<FileNode> nodes;
+    private final String directory;
+    private final boolean decompress;
+
+    private volatile boolean isCancelled = false;
+
+    private final AtomicInteger extracted = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private long begin;
+    private long lastReport;
+
+    /**
+     * Creates an extraction of nodes to a folder.
+     * @param nodes Nodes to extract, nodes without entries are ignored
+     * @param directory Folder to extract to
+     * @param decompress Whether or not to decompress resources
+     */
+    public ExtractionPipeline(List<FileNode> nodes, String directory, boolean decompress) {
+        this.nodes = new ArrayList<>(nodes.size());
+        for (FileNode node : nodes)
+            if (node.entry != null)
+                this.nodes.add(node);
+        this.directory = directory;
+        this.decompress = decompress;
+    }
+
+    /**
+     * Gets the number of entries that will be extracted.
+     * @return Number of entries
+     */
+    public int getTotal() { return this.nodes.size(); }
+
+    /**
+     * Stops the extraction, entries that are already being written still finish.
+     */
+    public void cancel() { this.isCancelled = true; }
+
+    public boolean isCancelled() { return this.isCancelled; }
+
+    /**
+     * Runs the extraction on the calling thread, returning once every entry has been written.
+     * @param progress Called with the number of entries finished so far, from the writer thread
+     * @return Whether or not every entry was extracted
+     */
+    public boolean run(IntConsumer progress) {
+        this.begin = System.currentTimeMillis();
+        this.lastReport = this.begin;
+
+        ArrayList<Job> memory = new ArrayList<>();
+        LinkedHashMap<FileArchive, ArrayList<Job>> archives = new LinkedHashMap<>();
+        archives.put(null, memory);
+        for (FileNode node : this.nodes) {
+            Path output = Paths.get(this.directory, node.path == null ? "" : node.path, node.header);
+            Job job = new Job(node, output);
+            if (Files.exists(output)) {
+                this.skipped.incrementAndGet();
+                continue;
+            }
+            this.plan(job, memory, archives);
+        }
+        for (FileArchive archive : archives.keySet())
+            if (archive != null)
+                archives.get(archive).sort((a, z) -> Long.compare(a.source.offset, z.source.offset));
+
+        if (this.skipped.get() != 0)
+            System.out.println("Skipping " + this.skipped.get() + " entries that were already extracted.");
+        progress.accept(this.skipped.get() + this.failed.get());
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Semaphore inFlight = new Semaphore(threads * 4);
+
+        try {
+            // Entries already in memory go first, then each archive is read front to back.
+            for (FileArchive archive : archives.keySet()) {
+                for (Job job : archives.get(archive)) {
+                    if (this.isCancelled) break;
+                    inFlight.acquire();
+                    if (archive != null)
+                        job.data = archive.extract(job.source);
+                    workers.submit(() -> {
+                        // The writer releases the permit, so it always has to get the job.
+                        try { this.decode(job); }
+                        finally {
+                            writer.submit(() -> {
+                                try { this.write(job, progress); }
+                                finally { inFlight.release(); }
+                            });
+                        }
+                    });
+                }
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            writer.shutdown();
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ex) {
+            this.isCancelled = true;
+            workers.shutdownNow();
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - this.begin);
+        System.out.println(String.format("%s extracting %d/%d entries, %d skipped, %d failed. (%s s, %.2f MB/s)",
+                this.isCancelled ? "Cancelled" : "Finished",
+                this.extracted.get(), this.nodes.size(),
+                this.skipped.get(), this.failed.get(),
+                elapsed / 1000,
+                (this.bytes.get() / 1048576.0) / (elapsed / 1000.0)));
+        if (this.isCancelled)
+            System.out.println("Run the same extraction to the same folder again to resume it.");
+
+        return !this.isCancelled && this.failed.get() == 0;
+    }
+
+    /**
+     * Finds where the data of an entry comes from.
+     */
+    private void plan(Job job, ArrayList<Job> memory, LinkedHashMap<FileArchive, ArrayList<Job>> archives) {
+        FileEntry entry = job.node.entry;
+        if (entry.data != null) {
+            job.data = entry.data;
+            memory.add(job);
+            return;
+        }
+
+        byte[] data = null;
+        if (Globals.currentWorkspace == Globals.WorkspaceType.PROFILE)
+            data = ((BigStreamingFart) Toolkit.instance.getCurrentDB()).extract(entry.hash);
+        else if (Globals.currentWorkspace == Globals.WorkspaceType.MOD)
+            data = ((Mod) Toolkit.instance.getCurrentDB()).extract(entry.hash);
+        if (data != null) {
+            job.data = data;
+            memory.add(job);
+            return;
+        }
+
+        for (FileArchive archive : Globals.archives) {
+            FileEntry source = archive.find(entry.hash);
+            if (source == null) continue;
+            job.source = source;
+            if (source.data != null) {
+                job.data = source.data;
+                memory.add(job);
+            } else archives.computeIfAbsent(archive, k -> new ArrayList<>()).add(job);
+            return;
+        }
+
+        System.err.println("Could not extract h" + entry.hash.toString());
+        this.failed.incrementAndGet();
+    }
+
+    private static Path getTemporaryPath(Job job) {
+        return job.output.resolveSibling(job.output.getFileName() + ".tmp");
+    }
+
+    private void decode(Job job) {
+        if (job.data == null || !this.decompress || this.isCancelled) return;
+        Path temp = ExtractionPipeline.getTemporaryPath(job);
+        try (InputStream stream = new ResourceInputStream(job.data)) {
+            Files.createDirectories(job.output.getParent());
+            job.staged = Files.copy(stream, temp, StandardCopyOption.REPLACE_EXISTING);
+            job.data = null;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Failed to decompress " + job.node.header + ", extracting it as is.");
+            try { Files.deleteIfExists(temp); }
+            catch (IOException e) {}
+        }
+    }
+
+    private void write(Job job, IntConsumer progress) {
+        Path temp = ExtractionPipeline.getTemporaryPath(job);
+        if (job.data == null && job.staged == -1) this.failed.incrementAndGet();
+        else if (this.isCancelled) {
+            try { Files.deleteIfExists(temp); }
+            catch (IOException e) {}
+        } else {
+            try {
+                if (job.staged == -1) {
+                    Files.createDirectories(job.output.getParent());
+                    Files.write(temp, job.data);
+                }
+                Files.move(temp, job.output, StandardCopyOption.REPLACE_EXISTING);
+                this.extracted.incrementAndGet();
+                this.bytes.addAndGet(job.staged == -1 ? job.data.length : job.staged);
+            } catch (IOException ex) {
+                System.err.println("Failed to write file to " + job.output.toString());
+                this.failed.incrementAndGet();
+                try { Files.deleteIfExists(temp); }
+                catch (IOException e) {}
+            }
+        }
+        job.data = null;
+
+        long now = System.currentTimeMillis();
+        if (now - this.lastReport >= REPORT_INTERVAL) {
+            this.lastReport = now;
+            System.out.println(String.format("Extracted %d/%d entries. (%.2f MB/s)",
+                    this.extracted.get() + this.skipped.get(), this.nodes.size(),
+                    (this.bytes.get() / 1048576.0) / ((now - this.begin) / 1000.0)));
+        }
+
+        progress.accept(this.extracted.get() + this.skipped.get() + this.failed.get());
+    }
+}
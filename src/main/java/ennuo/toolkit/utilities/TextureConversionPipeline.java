@@ -0,0 +1,376 @@
+package ennuo.toolkit.utilities;
+
+import ennuo.craftworld.resources.enums.CompressionProfile;
+import ennuo.craftworld.utilities.Bytes;
+import ennuo.craftworld.utilities.Images;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts every image in a folder to a texture.
+ *
+ * Images are read, decoded, compressed and written on a pool of workers, with only
+ * a limited number of images in flight at once. The DXT compression itself only runs
+ * on one worker at a time, see Images.toDDS. The SHA1 of every source image is kept
+ * in a manifest in the output folder, so running the same conversion again skips
+ * every image that hasn't changed since it was last converted with the same settings.
+ * Entries are appended to the manifest as each image finishes, so a conversion that gets
+ * killed can still be resumed, and the manifest is compacted once the conversion ends.
+ * Textures are written under a temporary name and renamed once complete.
+ */
+public class TextureConversionPipeline {
+    public static final String MANIFEST = "textures.sha1";
+    private static final long REPORT_INTERVAL = 5000;
+
+    private final Path input;
+    private final Path output;
+    private final boolean isGTF;
+    private final CompressionProfile profile;
+
+    private final List<Path> images = new ArrayList<>();
+
+    /**
+     * Images that would be converted to the same texture as an image before them.
+     */
+    private final List<Path> duplicates = new ArrayList<>();
+
+    /**
+     * Hash and settings of each source image by its path relative to the input folder.
+     */
+    private final Map<String, String> manifest = new ConcurrentHashMap<>();
+
+    private BufferedWriter manifestWriter;
+
+    private volatile boolean isCancelled = false;
+
+    private final AtomicInteger converted = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private long begin;
+    private volatile long lastReport;
+
+    /**
+     * Creates a conversion of every PNG, JPG and DDS in a folder and its subfolders.
+     * @param input Folder to convert
+     * @param output Folder to write textures to, mirroring the layout of the input folder
+     * @param isGTF Whether to convert to GTF textures instead of TEX
+     * @param profile Compression profile to use
+     * @throws IOException If the input folder couldn't be walked
+     */
+    public TextureConversionPipeline(String input, String output, boolean isGTF, CompressionProfile profile) throws IOException {
+        this.input = Paths.get(input).toAbsolutePath();
+        this.output = Paths.get(output).toAbsolutePath();
+        this.isGTF = isGTF;
+        this.profile = profile;
+
+        List<Path> images;
+        try (Stream<Path> files = Files.walk(this.input)) {
+            images = files
+                    .filter(Files::isRegularFile)
+                    .filter(TextureConversionPipeline::isImage)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        // foo.png and foo.dds would both be written to foo.tex, only the first one gets converted.
+        HashMap<String, Path> targets = new HashMap<>();
+        for (Path image : images) {
+            String target = this.getOutputPath(this.getRelativePath(image)).toString().toLowerCase();
+            Path existing = targets.putIfAbsent(target, image);
+            if (existing == null) {
+                this.images.add(image);
+                continue;
+            }
+            System.err.println(String.format("Skipping %s, it would overwrite the texture converted from %s.",
+                    this.getRelativePath(image), this.getRelativePath(existing)));
+            this.duplicates.add(image);
+        }
+    }
+
+    private static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".dds");
+    }
+
+    /**
+     * Gets the number of images that will be converted.
+     * @return Number of images
+     */
+    public int getTotal() { return this.images.size(); }
+
+    /**
+     * Gets the images that were skipped because another image converts to the same texture.
+     * @return Skipped images
+     */
+    public List<Path> getDuplicates() { return this.duplicates; }
+
+    /**
+     * Stops the conversion, images that are already being converted still finish.
+     */
+    public void cancel() { this.isCancelled = true; }
+
+    public boolean isCancelled() { return this.isCancelled; }
+
+    /**
+     * Gets the settings an image is converted with, a change in
+     * these means every image has to be converted again.
+     */
+    private String getSettings() { return (this.isGTF ? "gtf" : "tex") + "," + this.profile.name().toLowerCase(); }
+
+    /**
+     * Runs the conversion on the calling thread, returning once every image has been written.
+     * @param progress Called with the number of images finished so far, from the worker threads
+     * @return Whether or not every image was converted
+     */
+    public boolean run(IntConsumer progress) {
+        this.begin = System.currentTimeMillis();
+        this.lastReport = this.begin;
+
+        try { Files.createDirectories(this.output); }
+        catch (IOException ex) {
+            System.err.println("Failed to create output folder " + this.output.toString());
+            return false;
+        }
+        this.loadManifest();
+        this.openManifest();
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+
+        try {
+            for (Path image : this.images) {
+                if (this.isCancelled) break;
+                inFlight.acquire();
+                workers.submit(() -> {
+                    try { this.convert(image, progress); }
+                    finally { inFlight.release(); }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ex) {
+            this.isCancelled = true;
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        this.closeManifest();
+        this.saveManifest();
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - this.begin);
+        double seconds = elapsed / 1000.0;
+        System.out.println(String.format("%s converting %d/%d images, %d unchanged, %d failed, %d duplicates. (%.1f s, %.2f images/s, %.2f MB/s read, %.2f MB/s written)",
+                this.isCancelled ? "Cancelled" : "Finished",
+                this.converted.get(), this.images.size(),
+                this.skipped.get(), this.failed.get(), this.duplicates.size(),
+                seconds,
+                this.converted.get() / seconds,
+                (this.bytesRead.get() / 1048576.0) / seconds,
+                (this.bytesWritten.get() / 1048576.0) / seconds));
+        if (this.isCancelled)
+            System.out.println("Run the same conversion to the same folder again to resume it.");
+
+        return !this.isCancelled && this.failed.get() == 0 && this.duplicates.isEmpty();
+    }
+
+    private String getRelativePath(Path image) { return this.input.relativize(image).toString().replace('\\', '/'); }
+
+    private Path getOutputPath(String relative) {
+        int extension = relative.lastIndexOf('.');
+        return this.output.resolve(relative.substring(0, extension) + ".tex");
+    }
+
+    private void convert(Path image, IntConsumer progress) {
+        if (this.isCancelled) return;
+
+        String relative = this.getRelativePath(image);
+        Path target = this.getOutputPath(relative);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            byte[] data = Files.readAllBytes(image);
+            String entry = Bytes.toHex(Bytes.SHA1(data)).toLowerCase() + " " + this.getSettings();
+            if (entry.equals(this.manifest.get(relative)) && Files.exists(target)) {
+                this.skipped.incrementAndGet();
+                return;
+            }
+
+            BufferedImage decoded;
+            if (relative.toLowerCase().endsWith(".dds")) decoded = Images.fromDDS(data);
+            else decoded = Images.toImage(data);
+            if (decoded == null) {
+                System.err.println("Failed to decode " + relative);
+                this.failed.incrementAndGet();
+                return;
+            }
+
+            byte[] texture = this.isGTF ? Images.toGTF(decoded, this.profile) : Images.toTEX(decoded, this.profile);
+            if (texture == null) {
+                System.err.println("Failed to convert " + relative);
+                this.failed.incrementAndGet();
+                return;
+            }
+
+            Files.createDirectories(target.getParent());
+            Files.write(temp, texture);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+
+            this.manifest.put(relative, entry);
+            this.appendManifest(relative, entry);
+            this.converted.incrementAndGet();
+            this.bytesRead.addAndGet(data.length);
+            this.bytesWritten.addAndGet(texture.length);
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Failed to convert " + relative);
+            this.failed.incrementAndGet();
+            try { Files.deleteIfExists(temp); }
+            catch (IOException e) {}
+        } finally { this.report(progress); }
+    }
+
+    private void report(IntConsumer progress) {
+        int done = this.converted.get() + this.skipped.get() + this.failed.get();
+        long now = System.currentTimeMillis();
+        if (now - this.lastReport >= REPORT_INTERVAL) {
+            synchronized (this) {
+                if (now - this.lastReport >= REPORT_INTERVAL) {
+                    this.lastReport = now;
+                    System.out.println(String.format("Converted %d/%d images. (%.2f images/s)",
+                            done, this.images.size(),
+                            this.converted.get() / ((now - this.begin) / 1000.0)));
+                }
+            }
+        }
+        progress.accept(done);
+    }
+
+    /**
+     * Loads the manifest of a previous conversion, if there is one.
+     * Each line is the SHA1 of an image, its settings and its relative path.
+     */
+    private void loadManifest() {
+        Path path = this.output.resolve(MANIFEST);
+        if (!Files.exists(path)) return;
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) continue;
+                this.manifest.put(parts[2], parts[0] + " " + parts[1]);
+            }
+        } catch (IOException ex) {
+            System.err.println("Failed to read texture manifest, converting every image.");
+            this.manifest.clear();
+        }
+    }
+
+    /**
+     * Opens the manifest to append entries to as images finish.
+     */
+    private void openManifest() {
+        Path path = this.output.resolve(MANIFEST);
+        try { this.manifestWriter = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND); }
+        catch (IOException ex) {
+            System.err.println("Failed to open texture manifest, progress will only be saved once the conversion ends.");
+        }
+    }
+
+    /**
+     * Appends the entry of a converted image to the manifest, later
+     * lines replace earlier ones for the same image when it's loaded.
+     */
+    private synchronized void appendManifest(String relative, String entry) {
+        if (this.manifestWriter == null) return;
+        try {
+            this.manifestWriter.write(entry + " " + relative);
+            this.manifestWriter.newLine();
+            this.manifestWriter.flush();
+        } catch (IOException ex) {
+            System.err.println("Failed to append to texture manifest, progress will only be saved once the conversion ends.");
+            this.closeManifest();
+        }
+    }
+
+    private synchronized void closeManifest() {
+        if (this.manifestWriter == null) return;
+        try { this.manifestWriter.close(); }
+        catch (IOException ex) {}
+        this.manifestWriter = null;
+    }
+
+    /**
+     * Rewrites the manifest with a single sorted line per image.
+     */
+    private void saveManifest() {
+        ArrayList<String> lines = new ArrayList<>(this.manifest.size());
+        for (Map.Entry<String, String> entry : new TreeMap<>(this.manifest).entrySet())
+            lines.add(entry.getValue() + " " + entry.getKey());
+        Path path = this.output.resolve(MANIFEST);
+        Path temp = path.resolveSibling(MANIFEST + ".tmp");
+        try {
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            System.err.println("Failed to write texture manifest to " + path.toString());
+        }
+    }
+
+    /**
+     * Converts a folder of images without the user interface.
+     * Usage: [--gtf] [--fast|--balanced|--max] input output
+     * @param args Command line arguments
+     * @return Whether or not every image was converted
+     */
+    public static boolean run(String[] args) {
+        boolean isGTF = false;
+        CompressionProfile profile = CompressionProfile.MAX;
+        ArrayList<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            switch (arg) {
+                case "--gtf": isGTF = true; break;
+                case "--fast": profile = CompressionProfile.FAST; break;
+                case "--balanced": profile = CompressionProfile.BALANCED; break;
+                case "--max": profile = CompressionProfile.MAX; break;
+                default: paths.add(arg); break;
+            }
+        }
+
+        if (paths.size() != 2) {
+            System.err.println("Usage: --convert-textures [--gtf] [--fast|--balanced|--max] <input folder> <output folder>");
+            return false;
+        }
+
+        try {
+            TextureConversionPipeline pipeline = new TextureConversionPipeline(paths.get(0), paths.get(1), isGTF, profile);
+            System.out.println("Converting " + pipeline.getTotal() + " images to " + paths.get(1));
+            return pipeline.run(done -> {});
+        } catch (IOException ex) {
+            System.err.println("Failed to read input folder " + paths.get(0));
+            return false;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package ennuo.toolkit.utilities;
 
 import ennuo.craftworld.resources.io.FileIO;
-import ennuo.craftworld.resources.Resource;
+import ennuo.craftworld.resources.ResourceHeader;
 import ennuo.craftworld.resources.enums.ResourceType;
 import ennuo.craftworld.resources.enums.SerializationMethod;
 import ennuo.craftworld.swing.FileModel;
@@ -78,7 +78,7 @@ public class TreeSelectionListener {
                         (extractedData[2] & 0xFF) << 8 | 
                         (extractedData[3] & 0xFF) << 0;
             
-            Resource resource = new Resource(extractedData);
+            ResourceHeader resource = new ResourceHeader(extractedData);
             if (resource.method == SerializationMethod.BINARY)
                 entry.canReplaceDecompressed = true;
             entry.revision = resource.revision;
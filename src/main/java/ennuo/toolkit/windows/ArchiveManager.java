@@ -37,7 +37,7 @@ public class ArchiveManager extends javax.swing.JDialog {
             }
             
             FileArchive archive = null;
-            try { archive = new FileArchive(file); }
+            try { archive = new FileArchive(file, true); }
             catch (SerializationException ex) {
                 JOptionPane.showMessageDialog(this, ex.getMessage(), "An error occurred", JOptionPane.ERROR_MESSAGE);
                 return;
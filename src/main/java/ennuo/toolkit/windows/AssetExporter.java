@@ -4,10 +4,10 @@ import ennuo.craftworld.registry.MaterialRegistry;
 import ennuo.craftworld.registry.MaterialRegistry.MaterialEntry;
 import ennuo.craftworld.resources.Plan;
 import ennuo.craftworld.resources.Resource;
+import ennuo.craftworld.resources.ResourceHeader;
 import ennuo.craftworld.resources.enums.ResourceType;
 import ennuo.craftworld.resources.enums.SerializationMethod;
 import ennuo.craftworld.resources.structs.SHA1;
-import ennuo.craftworld.serializer.Data;
 import ennuo.craftworld.types.FileEntry;
 import ennuo.craftworld.types.data.ResourceDescriptor;
 import ennuo.craftworld.types.mods.Mod;
@@ -142,7 +142,7 @@ public class AssetExporter extends JDialog {
             return;
         }
         
-        Resource resource = new Resource(rootData);
+        ResourceHeader resource = new ResourceHeader(rootData);
         if (resource.type == ResourceType.INVALID) {
             this.dispose();
             this.root = null;
@@ -242,6 +242,7 @@ public class AssetExporter extends JDialog {
             return new ResourceDescriptor(asset.entry.GUID, asset.descriptor.type);
         }
         if (remap == null || (remap != null && resource.type != ResourceType.GFX_MATERIAL)) {
+            HashMap<ResourceDescriptor, ResourceDescriptor> replacements = new HashMap<>();
             for (int i = 0; i < resource.dependencies.size(); ++i) {
                 ResourceDescriptor dependencyDescriptor = resource.dependencies.get(i);
                 if (dependencyDescriptor.type == ResourceType.SCRIPT) continue;
@@ -250,8 +251,9 @@ public class AssetExporter extends JDialog {
                     System.out.println(asset.toString() + " : " + i);
                 else
                     System.out.println(asset.toString() + " : " + dependencyAsset.toString());
-                resource.replaceDependency(dependencyDescriptor, this.recurse(dependencyAsset, assets, remap));
+                replacements.put(dependencyDescriptor, this.recurse(dependencyAsset, assets, remap));
             }
+            resource.replaceDependencies(replacements);
         }
         if (resource.type == ResourceType.PLAN && asset.hashinate && asset.entry.GUID != -1)
             Plan.removePlanDescriptors(resource, asset.entry.GUID);
@@ -270,29 +272,10 @@ public class AssetExporter extends JDialog {
     
     private void getDescriptors(byte[] resource, HashSet<Asset> descriptors) {
         if (resource == null) return;
-        Data data = new Data(resource);
-        // Parse the resource manually, since the resource class auto-decompresses,
-        // saves some time.
-        ResourceType type = ResourceType.fromMagic(data.str(3));
-        if (type == ResourceType.INVALID) return;
-        SerializationMethod method = SerializationMethod.getValue(data.str(1));
-        if (method != SerializationMethod.BINARY && method != SerializationMethod.ENCRYPTED_BINARY)
-            return;
-        int revision = data.i32();
-        // Dependency table didn't exist before this revision.
-        if (revision < 0x109) return;
-        data.offset = data.i32();
-        int count = data.i32();
-        for (int i = 0; i < count; ++i) {
+        for (ResourceDescriptor descriptor : new ResourceHeader(resource).dependencies) {
             Asset asset = null;
-            switch (data.i8()) {
-                case 1: 
-                    asset = new Asset(new ResourceDescriptor(data.sha1(), ResourceType.fromType(data.i32())));
-                    break;
-                case 2:
-                    asset = new Asset(new ResourceDescriptor(data.u32(), ResourceType.fromType(data.i32())));
-                    break;
-            }
+            if (descriptor.GUID != -1) asset = new Asset(new ResourceDescriptor(descriptor.GUID, descriptor.type));
+            else if (descriptor.hash != null) asset = new Asset(new ResourceDescriptor(descriptor.hash, descriptor.type));
             if (asset != null) {
                 if (descriptors.contains(asset)) continue;
                 descriptors.add(asset);
@@ -9,6 +9,7 @@ import ennuo.craftworld.resources.*;
 import ennuo.craftworld.resources.io.FileIO;
 import ennuo.craftworld.swing.*;
 import ennuo.craftworld.resources.Plan;
+import ennuo.craftworld.resources.enums.CompressionProfile;
 import ennuo.craftworld.resources.enums.InventoryObjectSubType;
 import ennuo.craftworld.resources.enums.InventoryObjectType;
 import ennuo.craftworld.resources.enums.ResourceType;
@@ -26,12 +27,14 @@ import ennuo.toolkit.streams.TextAreaOutputStream;
 import java.awt.Color;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.PrintStream;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.swing.*;
 import tv.porst.jhexview.JHexView;
 import tv.porst.jhexview.SimpleDataProvider;
@@ -49,6 +52,7 @@ import ennuo.toolkit.utilities.Globals.WorkspaceType;
 import java.awt.EventQueue;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.*;
 import java.util.Arrays;
 import java.util.Random;
@@ -60,6 +64,11 @@ public class Toolkit extends javax.swing.JFrame {
     
     public ExecutorService databaseService = Executors.newSingleThreadExecutor();
     public ExecutorService resourceService = Executors.newSingleThreadExecutor();
+    public ExecutorService searchService = Executors.newSingleThreadExecutor();
+    public ExecutorService extractionService = Executors.newSingleThreadExecutor();
+    
+    private Future<?> searchTask;
+    private int searchGeneration = 0;
 
     public static ArrayList <JTree> trees;
 
@@ -618,6 +627,7 @@ public class Toolkit extends javax.swing.JFrame {
         installProfileMod = new javax.swing.JMenuItem();
         jSeparator8 = new javax.swing.JPopupMenu.Separator();
         convertTexture = new javax.swing.JMenuItem();
+        convertTextureFolder = new javax.swing.JMenuItem();
         jSeparator7 = new javax.swing.JPopupMenu.Separator();
         swapProfilePlatform = new javax.swing.JMenuItem();
         debugMenu = new javax.swing.JMenu();
@@ -1604,6 +1614,14 @@ public class Toolkit extends javax.swing.JFrame {
             }
         });
         toolsMenu.add(convertTexture);
+
+        convertTextureFolder.setText("Convert Texture Folder");
+        convertTextureFolder.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                convertTextureFolderActionPerformed(evt);
+            }
+        });
+        toolsMenu.add(convertTextureFolder);
         toolsMenu.add(jSeparator7);
 
         swapProfilePlatform.setText("Swap Profile Platform");
@@ -1684,6 +1702,10 @@ public class Toolkit extends javax.swing.JFrame {
         search.setForeground(Color.GRAY);
 
         fileDataTabs.setSelectedIndex(fileDataTabs.getTabCount() - 1);
+        
+        // Build the search index ahead of time, so the first search doesn't have to wait for it.
+        SearchIndex.Snapshot snapshot = data.getSearchSnapshot();
+        searchService.submit(() -> { data.getSearchIndex(snapshot); });
     }
 
     public int isDatabaseLoaded(File file) {
@@ -1812,11 +1834,35 @@ public class Toolkit extends javax.swing.JFrame {
     }
 
     private void searchActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_searchActionPerformed
-        getCurrentDB().query = search.getText();
+        FileData data = getCurrentDB();
+        if (data == null) return;
+        data.query = search.getText();
         JTree tree = getCurrentTree();
-        Nodes.filter((FileNode) tree.getModel().getRoot(), new SearchParameters(search.getText()));
-        ((FileModel) tree.getModel()).reload();
-        tree.updateUI();
+        FileModel model = (FileModel) tree.getModel();
+        SearchParameters params = new SearchParameters(search.getText());
+        
+        // Only the latest search gets to touch the tree, anything
+        // still running from an older query gets cancelled.
+        int generation = ++this.searchGeneration;
+        if (this.searchTask != null) this.searchTask.cancel(true);
+        SearchIndex.Snapshot snapshot = data.getSearchSnapshot();
+        this.searchTask = this.searchService.submit(() -> {
+            SearchIndex index = data.getSearchIndex(snapshot);
+            if (index == null) return;
+            EventQueue.invokeLater(() -> {
+                if (generation == this.searchGeneration) index.hideAll();
+            });
+            index.query(params, 0x4000, results -> EventQueue.invokeLater(() -> {
+                if (generation != this.searchGeneration) return;
+                index.show(results);
+                model.reload();
+            }));
+            EventQueue.invokeLater(() -> {
+                if (generation != this.searchGeneration) return;
+                model.reload();
+                tree.updateUI();
+            });
+        });
     }//GEN-LAST:event_searchActionPerformed
 
     private void dumpHashesActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_dumpHashesActionPerformed
@@ -2069,7 +2115,19 @@ public class Toolkit extends javax.swing.JFrame {
                 return;
             }
             archive.swapSaveKeyEndianness();
-            FileIO.write(archive.build(), FAR4.getAbsolutePath());
+            // The archive is still read from while it's built, so it has to go to a temporary file first.
+            Path temp = FAR4.toPath().resolveSibling(FAR4.getName() + ".tmp");
+            try {
+                try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                    if (!archive.build(stream)) throw new IOException("Failed to build FileArchive!");
+                }
+                Files.move(temp, FAR4.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                System.err.println("There was an error writing the FAR4, it has been left untouched.");
+                try { Files.deleteIfExists(temp); }
+                catch (IOException e) {}
+                return;
+            }
             JOptionPane.showMessageDialog(this, 
                     String.format("FAR4 has been swapped to %s endianness.", 
                             (archive.saveKey[0x38] != 0x00) ? "PS4" : "PS3"));
@@ -2188,9 +2246,9 @@ public class Toolkit extends javax.swing.JFrame {
             profiles = Bytes.Split(profile, 0x240000);
         }
         
+        TEA.encryptInPlace(profiles);
         for (int i = 0; i < profiles.length; ++i) {
             byte[] part = profiles[i];
-            part = TEA.encrypt(part);
             if (i + 1 == profiles.length)
                 part = Bytes.Combine(part, new byte[] { 0x46, 0x41, 0x52, 0x34 });
             FileIO.write(part, (Path.of(saveDirectory.toString(), String.valueOf(i))).toString());
@@ -2218,6 +2276,31 @@ public class Toolkit extends javax.swing.JFrame {
         FileIO.write(texture, save.getAbsolutePath());        
     }//GEN-LAST:event_convertTextureActionPerformed
 
+    private void convertTextureFolderActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_convertTextureFolderActionPerformed
+        String input = FileChooser.openDirectory();
+        if (input == null) return;
+        
+        String output = FileChooser.openDirectory();
+        if (output == null) return;
+        
+        TextureConversionPipeline pipeline;
+        try { pipeline = new TextureConversionPipeline(input, output, false, CompressionProfile.MAX); }
+        catch (IOException ex) {
+            System.err.println("Failed to read folder " + input);
+            return;
+        }
+        
+        ProgressMonitor monitor = new ProgressMonitor(this, "Converting textures...", null, 0, pipeline.getTotal());
+        monitor.setMillisToDecideToPopup(0);
+        this.extractionService.submit(() -> {
+            pipeline.run(done -> EventQueue.invokeLater(() -> {
+                if (monitor.isCanceled()) pipeline.cancel();
+                else monitor.setProgress(done);
+            }));
+            EventQueue.invokeLater(() -> monitor.close());
+        });
+    }//GEN-LAST:event_convertTextureFolderActionPerformed
+
     private void collectAllItemDependenciesActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_collectAllItemDependenciesActionPerformed
         DebugCallbacks.CollectDependencies(".plan");
     }//GEN-LAST:event_collectAllItemDependenciesActionPerformed
@@ -2300,8 +2383,9 @@ public class Toolkit extends javax.swing.JFrame {
             byte[] fragment = FileIO.read(fragments[i].getAbsolutePath());
             if (i + 1 == fragments.length) 
                 fragment = Arrays.copyOfRange(fragment, 0, fragment.length - 4);
-            data[i] = TEA.decrypt(fragment);
+            data[i] = fragment;
         }
+        TEA.decryptInPlace(Arrays.copyOf(data, fragments.length));
         File save = new File(Globals.workingDirectory, directory.getName());
         save.deleteOnExit();
         FileIO.write(Bytes.Combine(data), save.getAbsolutePath());
@@ -2548,6 +2632,7 @@ public class Toolkit extends javax.swing.JFrame {
     private javax.swing.JScrollPane consoleContainer;
     private javax.swing.JPopupMenu consolePopup;
     private javax.swing.JMenuItem convertTexture;
+    private javax.swing.JMenuItem convertTextureFolder;
     private javax.swing.JMenuItem createFileArchive;
     private javax.swing.JTextField creatorField;
     private javax.swing.JLabel creatorLabel;
@@ -1,5 +1,7 @@
 package net.npe.dds;
 
+import java.util.stream.IntStream;
+
 public final class DDSReader {
   public static final Order ARGB = new Order(16, 8, 0, 24);
   
@@ -35,6 +37,8 @@ public final class DDSReader {
   
   private static final int X8R8G8B8 = 262148;
   
+  private static final int PARALLEL_BLOCK_ROWS = 16;
+  
   public static int getHeight(byte[] buffer) {
     return buffer[12] & 0xFF | (buffer[13] & 0xFF) << 8 | (buffer[14] & 0xFF) << 16 | (buffer[15] & 0xFF) << 24;
   }
@@ -47,6 +51,23 @@ public final class DDSReader {
     return buffer[28] & 0xFF | (buffer[29] & 0xFF) << 8 | (buffer[30] & 0xFF) << 16 | (buffer[31] & 0xFF) << 24;
   }
   
+  /**
+   * Gets the smallest mipmap level that's still at least as large as a size,
+   * so previews never decode more than they need to.
+   * @param buffer DDS to check
+   * @param size Size the larger side of the mipmap has to cover
+   * @return Mipmap level to decode
+   */
+  public static int getMipmapLevel(byte[] buffer, int size) {
+    int width = getWidth(buffer);
+    int height = getHeight(buffer);
+    int mipmap = getMipmap(buffer);
+    int level = 0;
+    while (level + 1 < mipmap && Math.max(width >> (level + 1), height >> (level + 1)) >= size)
+      level++;
+    return level;
+  }
+  
   public static int getPixelFormatFlags(byte[] buffer) {
     return buffer[80] & 0xFF | (buffer[81] & 0xFF) << 8 | (buffer[82] & 0xFF) << 16 | (buffer[83] & 0xFF) << 24;
   }
@@ -76,24 +97,43 @@ public final class DDSReader {
   }
   
   public static int[] read(byte[] buffer, Order order, int mipmapLevel) {
+    if (getType(buffer) == 0)
+      return null; 
+    int[] pixels = new int[getWidth(buffer, mipmapLevel) * getHeight(buffer, mipmapLevel)];
+    if (!read(buffer, order, mipmapLevel, pixels))
+      return null; 
+    return pixels;
+  }
+  
+  /**
+   * Decodes a mipmap into a caller provided array, so it can be decoded
+   * straight into the backing array of an image.
+   * Block compressed formats are decoded a row of blocks at a time in parallel.
+   * @param buffer DDS to decode
+   * @param order Channel order of the decoded pixels
+   * @param mipmapLevel Mipmap level to decode
+   * @param pixels Array to decode into, at least getWidth(buffer, mipmapLevel) * getHeight(buffer, mipmapLevel) long
+   * @return Whether or not the format was supported
+   */
+  public static boolean read(byte[] buffer, Order order, int mipmapLevel, int[] pixels) {
     int width = getWidth(buffer);
     int height = getHeight(buffer);
     int mipmap = getMipmap(buffer);
     int type = getType(buffer);
     if (type == 0)
-      return null; 
+      return false; 
     int offset = 128;
     if (mipmapLevel > 0 && mipmapLevel < mipmap) {
       for (int i = 0; i < mipmapLevel; i++) {
         switch (type) {
           case 1146639409:
-            offset += 8 * (width + 3) / 4 * (height + 3) / 4;
+            offset += 8 * ((width + 3) / 4) * ((height + 3) / 4);
             break;
           case 1146639410:
           case 1146639411:
           case 1146639412:
           case 1146639413:
-            offset += 16 * (width + 3) / 4 * (height + 3) / 4;
+            offset += 16 * ((width + 3) / 4) * ((height + 3) / 4);
             break;
           case 65538:
           case 65539:
@@ -114,67 +154,83 @@ public final class DDSReader {
             offset += width * height;
             break;
         } 
-        width /= 2;
-        height /= 2;
+        width = Math.max(1, width / 2);
+        height = Math.max(1, height / 2);
       } 
-      if (width <= 0)
-        width = 1; 
-      if (height <= 0)
-        height = 1; 
     }
+    
+    if (pixels.length < width * height)
+      throw new IllegalArgumentException("Pixel array is too small for mipmap!");
 
-    int[] pixels = null;
     switch (type) {
       case 0xFF:
-        pixels = readB8(width, height, offset, buffer, order);
-        break;
+        readB8(width, height, offset, buffer, order, pixels);
+        return true;
       case 1146639409:
-        pixels = decodeDXT1(width, height, offset, buffer, order);
-        break;
+        decodeDXT1(width, height, offset, buffer, order, pixels);
+        return true;
       case 1146639410:
-        pixels = decodeDXT2(width, height, offset, buffer, order);
-        break;
+        decodeDXT2(width, height, offset, buffer, order, pixels);
+        return true;
       case 1146639411:
-        pixels = decodeDXT3(width, height, offset, buffer, order);
-        break;
+        decodeDXT3(width, height, offset, buffer, order, pixels);
+        return true;
       case 1146639412:
-        pixels = decodeDXT4(width, height, offset, buffer, order);
-        break;
+        decodeDXT4(width, height, offset, buffer, order, pixels);
+        return true;
       case 1146639413:
-        pixels = decodeDXT5(width, height, offset, buffer, order);
-        break;
+        decodeDXT5(width, height, offset, buffer, order, pixels);
+        return true;
       case 65538:
-        pixels = readA1R5G5B5(width, height, offset, buffer, order);
-        break;
+        readA1R5G5B5(width, height, offset, buffer, order, pixels);
+        return true;
       case 131074:
-        pixels = readX1R5G5B5(width, height, offset, buffer, order);
-        break;
+        readX1R5G5B5(width, height, offset, buffer, order, pixels);
+        return true;
       case 196610:
-        pixels = readA4R4G4B4(width, height, offset, buffer, order);
-        break;
+        readA4R4G4B4(width, height, offset, buffer, order, pixels);
+        return true;
       case 262146:
-        pixels = readX4R4G4B4(width, height, offset, buffer, order);
-        break;
+        readX4R4G4B4(width, height, offset, buffer, order, pixels);
+        return true;
       case 327682:
-        pixels = readR5G6B5(width, height, offset, buffer, order);
-        break;
+        readR5G6B5(width, height, offset, buffer, order, pixels);
+        return true;
       case 65539:
-        pixels = readR8G8B8(width, height, offset, buffer, order);
-        break;
+        readR8G8B8(width, height, offset, buffer, order, pixels);
+        return true;
       case 65540:
-        pixels = readA8B8G8R8(width, height, offset, buffer, order);
-        break;
+        readA8B8G8R8(width, height, offset, buffer, order, pixels);
+        return true;
       case 131076:
-        pixels = readX8B8G8R8(width, height, offset, buffer, order);
-        break;
+        readX8B8G8R8(width, height, offset, buffer, order, pixels);
+        return true;
       case 196612:
-        pixels = readA8R8G8B8(width, height, offset, buffer, order);
-        break;
+        readA8R8G8B8(width, height, offset, buffer, order, pixels);
+        return true;
       case 262148:
-        pixels = readX8R8G8B8(width, height, offset, buffer, order);
-        break;
+        readX8R8G8B8(width, height, offset, buffer, order, pixels);
+        return true;
     } 
-    return pixels;
+    return false;
+  }
+  
+  /**
+   * Gets the width of a mipmap, levels out of range are the same as level 0.
+   */
+  public static int getWidth(byte[] buffer, int mipmapLevel) {
+    if (mipmapLevel <= 0 || mipmapLevel >= getMipmap(buffer))
+      return getWidth(buffer); 
+    return Math.max(1, getWidth(buffer) >> mipmapLevel);
+  }
+  
+  /**
+   * Gets the height of a mipmap, levels out of range are the same as level 0.
+   */
+  public static int getHeight(byte[] buffer, int mipmapLevel) {
+    if (mipmapLevel <= 0 || mipmapLevel >= getMipmap(buffer))
+      return getHeight(buffer); 
+    return Math.max(1, getHeight(buffer) >> mipmapLevel);
   }
   
   private static int getType(byte[] buffer) {
@@ -224,145 +280,105 @@ public final class DDSReader {
     return type;
   }
   
-  private static int[] decodeDXT1(int width, int height, int offset, byte[] buffer, Order order) {
-    int[] pixels = new int[width * height];
-    int index = offset;
+  /**
+   * Gets the rows of blocks to decode, in parallel unless there are too few to be worth it.
+   */
+  private static IntStream getBlockRows(int h) {
+    IntStream rows = IntStream.range(0, h);
+    return (h >= PARALLEL_BLOCK_ROWS) ? rows.parallel() : rows;
+  }
+  
+  private static void decodeDXT1(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int w = (width + 3) / 4;
     int h = (height + 3) / 4;
-    for (int i = 0; i < h; i++) {
+    getBlockRows(h).forEach(i -> {
+      int index = offset + 8 * w * i;
       for (int j = 0; j < w; j++) {
         int c0 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
-        index += 2;
-        int c1 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
-        index += 2;
-        for (int k = 0; k < 4 && 
-          4 * i + k < height; k++) {
-          int t0 = buffer[index] & 0x3;
-          int t1 = (buffer[index] & 0xC) >> 2;
-          int t2 = (buffer[index] & 0x30) >> 4;
-          int t3 = (buffer[index++] & 0xC0) >> 6;
-          pixels[4 * width * i + 4 * j + width * k + 0] = getDXTColor(c0, c1, 255, t0, order);
-          if (4 * j + 1 < width) {
-            pixels[4 * width * i + 4 * j + width * k + 1] = getDXTColor(c0, c1, 255, t1, order);
-            if (4 * j + 2 < width) {
-              pixels[4 * width * i + 4 * j + width * k + 2] = getDXTColor(c0, c1, 255, t2, order);
-              if (4 * j + 3 < width)
-                pixels[4 * width * i + 4 * j + width * k + 3] = getDXTColor(c0, c1, 255, t3, order); 
+        int c1 = buffer[index + 2] & 0xFF | (buffer[index + 3] & 0xFF) << 8;
+        int bits = buffer[index + 4] & 0xFF | (buffer[index + 5] & 0xFF) << 8 | (buffer[index + 6] & 0xFF) << 16 | (buffer[index + 7] & 0xFF) << 24;
+        index += 8;
+        int p0 = getDXTColor(c0, c1, 255, 0, order);
+        int p1 = getDXTColor(c0, c1, 255, 1, order);
+        int p2 = getDXTColor(c0, c1, 255, 2, order);
+        int p3 = getDXTColor(c0, c1, 255, 3, order);
+        int columns = Math.min(4, width - 4 * j);
+        for (int k = 0; k < 4 && 4 * i + k < height; k++) {
+          int row = width * (4 * i + k) + 4 * j;
+          for (int m = 0; m < columns; m++) {
+            switch (bits >>> (8 * k + 2 * m) & 0x3) {
+              case 0: pixels[row + m] = p0; break;
+              case 1: pixels[row + m] = p1; break;
+              case 2: pixels[row + m] = p2; break;
+              default: pixels[row + m] = p3; break;
             } 
           } 
         } 
       } 
-    } 
-    return pixels;
+    });
   }
   
-  private static int[] decodeDXT2(int width, int height, int offset, byte[] buffer, Order order) {
-    return decodeDXT3(width, height, offset, buffer, order);
+  private static void decodeDXT2(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
+    decodeDXT3(width, height, offset, buffer, order, pixels);
   }
   
-  private static int[] decodeDXT3(int width, int height, int offset, byte[] buffer, Order order) {
-    int index = offset;
+  private static void decodeDXT3(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int w = (width + 3) / 4;
     int h = (height + 3) / 4;
-    int[] pixels = new int[width * height];
-    int[] alphaTable = new int[16];
-    for (int i = 0; i < h; i++) {
+    getBlockRows(h).forEach(i -> {
+      int index = offset + 16 * w * i;
       for (int j = 0; j < w; j++) {
-        for (int k = 0; k < 4; k++) {
-          int a0 = buffer[index++] & 0xFF;
-          int a1 = buffer[index++] & 0xFF;
-          alphaTable[4 * k + 0] = 17 * ((a0 & 0xF0) >> 4);
-          alphaTable[4 * k + 1] = 17 * (a0 & 0xF);
-          alphaTable[4 * k + 2] = 17 * ((a1 & 0xF0) >> 4);
-          alphaTable[4 * k + 3] = 17 * (a1 & 0xF);
-        } 
-        int c0 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
-        index += 2;
-        int c1 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
-        index += 2;
-        for (int m = 0; m < 4 && 
-          4 * i + m < height; m++) {
-          int t0 = buffer[index] & 0x3;
-          int t1 = (buffer[index] & 0xC) >> 2;
-          int t2 = (buffer[index] & 0x30) >> 4;
-          int t3 = (buffer[index++] & 0xC0) >> 6;
-          pixels[4 * width * i + 4 * j + width * m + 0] = getDXTColor(c0, c1, alphaTable[4 * m + 0], t0, order);
-          if (4 * j + 1 < width) {
-            pixels[4 * width * i + 4 * j + width * m + 1] = getDXTColor(c0, c1, alphaTable[4 * m + 1], t1, order);
-            if (4 * j + 2 < width) {
-              pixels[4 * width * i + 4 * j + width * m + 2] = getDXTColor(c0, c1, alphaTable[4 * m + 2], t2, order);
-              if (4 * j + 3 < width)
-                pixels[4 * width * i + 4 * j + width * m + 3] = getDXTColor(c0, c1, alphaTable[4 * m + 3], t3, order); 
-            } 
+        int c0 = buffer[index + 8] & 0xFF | (buffer[index + 9] & 0xFF) << 8;
+        int c1 = buffer[index + 10] & 0xFF | (buffer[index + 11] & 0xFF) << 8;
+        int columns = Math.min(4, width - 4 * j);
+        for (int k = 0; k < 4 && 4 * i + k < height; k++) {
+          int alpha = buffer[index + 2 * k] & 0xFF | (buffer[index + 2 * k + 1] & 0xFF) << 8;
+          int bits = buffer[index + 12 + k] & 0xFF;
+          int row = width * (4 * i + k) + 4 * j;
+          for (int m = 0; m < columns; m++) {
+            // Alpha nibbles are stored high nibble first.
+            int a = 17 * (alpha >>> (4 * (m ^ 1)) & 0xF);
+            pixels[row + m] = getDXTColor(c0, c1, a, bits >>> (2 * m) & 0x3, order);
           } 
         } 
+        index += 16;
       } 
-    } 
-    return pixels;
+    });
   }
   
-  private static int[] decodeDXT4(int width, int height, int offset, byte[] buffer, Order order) {
-    return decodeDXT5(width, height, offset, buffer, order);
+  private static void decodeDXT4(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
+    decodeDXT5(width, height, offset, buffer, order, pixels);
   }
   
-  private static int[] decodeDXT5(int width, int height, int offset, byte[] buffer, Order order) {
-    int index = offset;
+  private static void decodeDXT5(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int w = (width + 3) / 4;
     int h = (height + 3) / 4;
-    int[] pixels = new int[width * height];
-    int[] alphaTable = new int[16];
-    for (int i = 0; i < h; i++) {
+    getBlockRows(h).forEach(i -> {
+      int index = offset + 16 * w * i;
       for (int j = 0; j < w; j++) {
-        int a0 = buffer[index++] & 0xFF;
-        int a1 = buffer[index++] & 0xFF;
-        int b0 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8 | (buffer[index + 2] & 0xFF) << 16;
-        index += 3;
-        int b1 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8 | (buffer[index + 2] & 0xFF) << 16;
-        index += 3;
-        alphaTable[0] = b0 & 0x7;
-        alphaTable[1] = b0 >> 3 & 0x7;
-        alphaTable[2] = b0 >> 6 & 0x7;
-        alphaTable[3] = b0 >> 9 & 0x7;
-        alphaTable[4] = b0 >> 12 & 0x7;
-        alphaTable[5] = b0 >> 15 & 0x7;
-        alphaTable[6] = b0 >> 18 & 0x7;
-        alphaTable[7] = b0 >> 21 & 0x7;
-        alphaTable[8] = b1 & 0x7;
-        alphaTable[9] = b1 >> 3 & 0x7;
-        alphaTable[10] = b1 >> 6 & 0x7;
-        alphaTable[11] = b1 >> 9 & 0x7;
-        alphaTable[12] = b1 >> 12 & 0x7;
-        alphaTable[13] = b1 >> 15 & 0x7;
-        alphaTable[14] = b1 >> 18 & 0x7;
-        alphaTable[15] = b1 >> 21 & 0x7;
-        int c0 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
-        index += 2;
-        int c1 = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
-        index += 2;
-        for (int k = 0; k < 4 && 
-          4 * i + k < height; k++) {
-          int t0 = buffer[index] & 0x3;
-          int t1 = (buffer[index] & 0xC) >> 2;
-          int t2 = (buffer[index] & 0x30) >> 4;
-          int t3 = (buffer[index++] & 0xC0) >> 6;
-          pixels[4 * width * i + 4 * j + width * k + 0] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4 * k + 0]), t0, order);
-          if (4 * j + 1 < width) {
-            pixels[4 * width * i + 4 * j + width * k + 1] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4 * k + 1]), t1, order);
-            if (4 * j + 2 < width) {
-              pixels[4 * width * i + 4 * j + width * k + 2] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4 * k + 2]), t2, order);
-              if (4 * j + 3 < width)
-                pixels[4 * width * i + 4 * j + width * k + 3] = getDXTColor(c0, c1, getDXT5Alpha(a0, a1, alphaTable[4 * k + 3]), t3, order); 
-            } 
+        int a0 = buffer[index] & 0xFF;
+        int a1 = buffer[index + 1] & 0xFF;
+        long alpha = 0;
+        for (int b = 7; b >= 2; b--)
+          alpha = alpha << 8 | (buffer[index + b] & 0xFF); 
+        int c0 = buffer[index + 8] & 0xFF | (buffer[index + 9] & 0xFF) << 8;
+        int c1 = buffer[index + 10] & 0xFF | (buffer[index + 11] & 0xFF) << 8;
+        int columns = Math.min(4, width - 4 * j);
+        for (int k = 0; k < 4 && 4 * i + k < height; k++) {
+          int bits = buffer[index + 12 + k] & 0xFF;
+          int row = width * (4 * i + k) + 4 * j;
+          for (int m = 0; m < columns; m++) {
+            int a = getDXT5Alpha(a0, a1, (int) (alpha >>> (3 * (4 * k + m))) & 0x7);
+            pixels[row + m] = getDXTColor(c0, c1, a, bits >>> (2 * m) & 0x3, order);
           } 
         } 
+        index += 16;
       } 
-    } 
-    return pixels;
+    });
   }
   
-  private static int[] readA1R5G5B5(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readA1R5G5B5(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int rgba = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
       index += 2;
@@ -372,12 +388,10 @@ public final class DDSReader {
       int a = 255 * ((rgba & A1R5G5B5_MASKS[3]) >> 15);
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readX1R5G5B5(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readX1R5G5B5(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int rgba = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
       index += 2;
@@ -387,12 +401,10 @@ public final class DDSReader {
       int a = 255;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readA4R4G4B4(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readA4R4G4B4(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int rgba = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
       index += 2;
@@ -402,12 +414,10 @@ public final class DDSReader {
       int a = 17 * ((rgba & A4R4G4B4_MASKS[3]) >> 12);
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readX4R4G4B4(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readX4R4G4B4(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int rgba = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
       index += 2;
@@ -417,12 +427,10 @@ public final class DDSReader {
       int a = 255;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readR5G6B5(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readR5G6B5(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int rgba = buffer[index] & 0xFF | (buffer[index + 1] & 0xFF) << 8;
       index += 2;
@@ -432,23 +440,19 @@ public final class DDSReader {
       int a = 255;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readB8(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readB8(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
       int index = offset;
-      int[] pixels = new int[width * height];
       for (int i = 0; i < height * width; ++i) {
           int b = buffer[index] & 0xFF;
           index++;
           pixels[i] = 255 << order.alphaShift | 0 << order.redShift | 0 << order.greenShift | b << order.blueShift;
       }
-      return pixels;
   }
   
-  private static int[] readR8G8B8(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readR8G8B8(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int b = buffer[index++] & 0xFF;
       int g = buffer[index++] & 0xFF;
@@ -456,12 +460,10 @@ public final class DDSReader {
       int a = 255;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readA8B8G8R8(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readA8B8G8R8(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int r = buffer[index++] & 0xFF;
       int g = buffer[index++] & 0xFF;
@@ -469,12 +471,10 @@ public final class DDSReader {
       int a = buffer[index++] & 0xFF;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readX8B8G8R8(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readX8B8G8R8(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int r = buffer[index++] & 0xFF;
       int g = buffer[index++] & 0xFF;
@@ -483,12 +483,10 @@ public final class DDSReader {
       index++;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readA8R8G8B8(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readA8R8G8B8(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int b = buffer[index++] & 0xFF;
       int g = buffer[index++] & 0xFF;
@@ -496,12 +494,10 @@ public final class DDSReader {
       int a = buffer[index++] & 0xFF;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
-  private static int[] readX8R8G8B8(int width, int height, int offset, byte[] buffer, Order order) {
+  private static void readX8R8G8B8(int width, int height, int offset, byte[] buffer, Order order, int[] pixels) {
     int index = offset;
-    int[] pixels = new int[width * height];
     for (int i = 0; i < height * width; i++) {
       int b = buffer[index++] & 0xFF;
       int g = buffer[index++] & 0xFF;
@@ -510,7 +506,6 @@ public final class DDSReader {
       index++;
       pixels[i] = a << order.alphaShift | r << order.redShift | g << order.greenShift | b << order.blueShift;
     } 
-    return pixels;
   }
   
   private static int getDXTColor(int c0, int c1, int a, int t, Order order) {